@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Access to the engine classes for the benchmarks.
+ *
+ * The engine lives in the default package, which classes in a named
+ * package cannot refer to, and JMH only accepts benchmarks in a named
+ * package. So the engine is reached through method handles looked up
+ * once. Held in static final fields, they are constants to the JIT,
+ * which inlines the call as if it were written directly.
+ */
+final class Engine {
+	static final MethodHandle IS_MOVING_STRAIGHT =
+			method("Piece", "isMovingStraight", boolean.class, int.class, int.class);
+	static final MethodHandle IS_MOVING_DIAGONAL =
+			method("Piece", "isMovingDiagonal", boolean.class, int.class, int.class);
+	static final MethodHandle CAN_MOVE_TO =
+			method("Piece", "canMoveTo", boolean.class, int.class, int.class);
+	static final MethodHandle CAN_MOVE =
+			method("Game", "canMove", boolean.class, int.class);
+	static final MethodHandle IS_KING_IN_CHECK =
+			method("Game", "isKingInCheck", boolean.class, int.class);
+	static final MethodHandle IS_CHECKMATE =
+			method("Game", "isCheckmate", boolean.class, int.class);
+	static final MethodHandle GENERATE_LEGAL_MOVES =
+			method("Game", "generateLegalMoves", int.class, int.class, int[].class);
+	static final MethodHandle SETUP_FEN =
+			method("Game", "setupFen", void.class, byte[].class, int.class, int.class);
+
+	static final int MAX_MOVES = constant("Game", "MAX_MOVES");
+
+	private Engine(){
+	}
+
+	/**
+	 * A new game set up from a FEN record.
+	 */
+	static Object newGame(String fen){
+		try {
+			Object game = Class.forName("Game").getConstructor().newInstance();
+			game.getClass().getMethod("setupFen", CharSequence.class).invoke(game, fen);
+			return game;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static int playerTurn(Object game){
+		try {
+			return (Integer) game.getClass().getMethod("getPlayerTurn").invoke(game);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * The piece standing at a location of a game's board, or null.
+	 */
+	static Object pieceAt(Object game, int xPosition, int yPosition){
+		try {
+			Object board = game.getClass().getMethod("getBoard").invoke(game);
+			return board.getClass().getMethod("pieceAt", int.class, int.class)
+					.invoke(board, xPosition, yPosition);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static int constant(String className, String name){
+		try {
+			return Class.forName(className).getField(name).getInt(null);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Looks up an instance method, protected ones included, typed to
+	 * take its receiver as an Object so that invokeExact can be used.
+	 */
+	private static MethodHandle method(String className, String name,
+			Class<?> returnType, Class<?>... parameterTypes){
+		try {
+			Method method = Class.forName(className).getDeclaredMethod(name, parameterTypes);
+			method.setAccessible(true);
+			return MethodHandles.lookup().unreflect(method)
+					.asType(MethodType.methodType(returnType, parameterTypes).insertParameterTypes(0, Object.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole-position checks, for the player to move, on middlegame
+ * positions: two quiet ones, one full of pins and captures, and a
+ * checkmate so that isCheckmate has to look at every reply.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GameBenchmarks {
+	@Param({
+		"r2q1rk1/pp1nbppp/2p1pn2/3p4/2PP4/2NBPN2/PP3PPP/R2QK2R w - - 3 12",
+		"r1bq1rk1/pp2bppp/2n1pn2/2pp4/3P4/2PBPN2/PP1N1PPP/R1BQ1RK1 w - - 2 8",
+		"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w - - 0 1",
+		"r1bqkb1r/pppp1Qpp/2n2n2/4p3/2B1P3/8/PPPP1PPP/RNB1K1NR b - - 0 4"
+	})
+	public String fen;
+
+	private Object game;
+	private int player;
+	private int[] moves;
+	private Object fenGame;
+	private byte[] fenBytes;
+
+	@Setup
+	public void setUp(){
+		game = Engine.newGame(fen);
+		player = Engine.playerTurn(game);
+		moves = new int[Engine.MAX_MOVES];
+		fenGame = Engine.newGame(fen);
+		fenBytes = fen.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	@Benchmark
+	public boolean canMove() throws Throwable {
+		return (boolean) Engine.CAN_MOVE.invokeExact(game, player);
+	}
+
+	@Benchmark
+	public boolean isKingInCheck() throws Throwable {
+		return (boolean) Engine.IS_KING_IN_CHECK.invokeExact(game, player);
+	}
+
+	@Benchmark
+	public boolean isCheckmate() throws Throwable {
+		return (boolean) Engine.IS_CHECKMATE.invokeExact(game, player);
+	}
+
+	@Benchmark
+	public int generateLegalMoves() throws Throwable {
+		return (int) Engine.GENERATE_LEGAL_MOVES.invokeExact(game, player, moves);
+	}
+
+	@Benchmark
+	public Object setupFen() throws Throwable {
+		Engine.SETUP_FEN.invokeExact(fenGame, fenBytes, 0, fenBytes.length);
+		return fenGame;
+	}
+}
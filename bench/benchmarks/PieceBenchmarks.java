@@ -0,0 +1,72 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Move checks of single pieces on a developed middlegame position.
+ * Each operation tries a piece against a spread of target squares,
+ * some reachable and some blocked.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PieceBenchmarks {
+	// Queen's gambit style middlegame, both sides fully developed
+	public static final String MIDDLEGAME = "r2q1rk1/pp1nbppp/2p1pn2/3p4/2PP4/2NBPN2/PP3PPP/R2QK2R w - - 3 12";
+
+	private Object rook;
+	private Object bishop;
+	private Object pawn;
+
+	@Setup
+	public void setUp(){
+		Object game = Engine.newGame(MIDDLEGAME);
+		rook = Engine.pieceAt(game, 7, 0);
+		bishop = Engine.pieceAt(game, 5, 3);
+		pawn = Engine.pieceAt(game, 4, 2);
+	}
+
+	@Benchmark
+	public int isMovingStraight() throws Throwable {
+		int found = 0;
+		for (int y = 0; y < 8; y++){
+			if ((boolean) Engine.IS_MOVING_STRAIGHT.invokeExact(rook, 7, y)) found++;
+			if ((boolean) Engine.IS_MOVING_STRAIGHT.invokeExact(rook, y, 0)) found++;
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int isMovingDiagonal() throws Throwable {
+		int found = 0;
+		for (int i = 0; i < 8; i++){
+			if ((boolean) Engine.IS_MOVING_DIAGONAL.invokeExact(bishop, i, i - 2)) found++;
+			if ((boolean) Engine.IS_MOVING_DIAGONAL.invokeExact(bishop, i, 8 - i)) found++;
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int pawnCanMoveTo() throws Throwable {
+		int found = 0;
+		for (int y = 1; y < 4; y++){
+			if ((boolean) Engine.CAN_MOVE_TO.invokeExact(pawn, 3, y)) found++;
+			if ((boolean) Engine.CAN_MOVE_TO.invokeExact(pawn, 2, y)) found++;
+		}
+		return found;
+	}
+}
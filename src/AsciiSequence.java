@@ -0,0 +1,63 @@
+
+/**
+ * A CharSequence view of ASCII text in a byte array, so that parsers
+ * written against CharSequence can read raw file or network buffers
+ * without decoding them into Strings first. One view can be pointed
+ * at new text again and again, so reading many records allocates
+ * nothing.
+ */
+public class AsciiSequence implements CharSequence {
+	private byte[] data;
+	private int offset;
+	private int length;
+	
+	public AsciiSequence(){
+		this(new byte[0], 0, 0);
+	}
+	
+	public AsciiSequence(byte[] data, int offset, int length){
+		wrap(data, offset, length);
+	}
+	
+	/**
+	 * Points this view at other text.
+	 * @param data - the bytes holding the text
+	 * @param offset - index of the first character
+	 * @param length - number of characters
+	 * @return - this view
+	 */
+	public AsciiSequence wrap(byte[] data, int offset, int length){
+		if (offset < 0 || length < 0 || offset + length > data.length)
+			throw new IndexOutOfBoundsException("Text outside of the array: "
+					+ offset + "+" + length + " of " + data.length);
+		this.data = data;
+		this.offset = offset;
+		this.length = length;
+		return this;
+	}
+	
+	public int length(){
+		return length;
+	}
+	
+	public char charAt(int index){
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("Index " + index + " of " + length);
+		return (char) (data[offset + index] & 0xFF);
+	}
+	
+	public CharSequence subSequence(int start, int end){
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException("Range " + start + "-" + end + " of " + length);
+		return new AsciiSequence(data, offset + start, end - start);
+	}
+	
+	@Override
+	public String toString(){
+		char[] text = new char[length];
+		for (int i = 0; i < length; i++){
+			text[i] = (char) (data[offset + i] & 0xFF);
+		}
+		return new String(text);
+	}
+}
@@ -0,0 +1,190 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Validates every game of a PGN file in parallel.
+ *
+ * The file is cut into shards at game boundaries (a tag line right after
+ * a blank line), and each shard is memory-mapped and replayed by its own
+ * PgnReader, with its own Game, as a fork/join task. Shards share nothing,
+ * so the work spreads evenly over the pool's threads. The reports of
+ * neighbouring shards are merged in file order.
+ */
+public class BatchValidator {
+	public static final long DEFAULT_SHARD_BYTES = 16L * 1024 * 1024;
+	private static final long MIN_SHARD_BYTES = 64 * 1024;
+	// Shards per thread, so that threads finishing early find more work
+	private static final int SHARDS_PER_THREAD = 4;
+	private static final int SCAN_BYTES = 64 * 1024;
+	
+	private int parallelism;
+	private long shardBytes;
+	
+	/**
+	 * @param parallelism - number of threads to validate with
+	 */
+	public BatchValidator(int parallelism){
+		this(parallelism, DEFAULT_SHARD_BYTES);
+	}
+	
+	/**
+	 * @param parallelism - number of threads to validate with
+	 * @param shardBytes - largest shard to aim for; shards end at the
+	 * first game boundary after this many bytes
+	 */
+	public BatchValidator(int parallelism, long shardBytes){
+		this.parallelism = Math.max(1, parallelism);
+		this.shardBytes = Math.max(1, shardBytes);
+	}
+	
+	/**
+	 * Replays every game of a PGN file.
+	 * @param path - the file
+	 * @return - the report of all the games, in file order
+	 * @throws IOException if the file cannot be read
+	 */
+	public ValidationReport validate(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		
+		try {
+			long[] bounds = findShards(channel);
+			return pool.invoke(new ShardTask(channel, bounds, 0, bounds.length - 1));
+		} catch (ShardException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdown();
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Picks the shard boundaries of a file.
+	 * @return - the start of every shard, then the end of the file
+	 */
+	private long[] findShards(FileChannel channel) throws IOException {
+		long size = channel.size();
+		long target = Math.min(shardBytes,
+				Math.max(MIN_SHARD_BYTES, size / (parallelism * SHARDS_PER_THREAD)));
+		
+		long[] bounds = new long[16];
+		int count = 0;
+		bounds[count++] = 0;
+		long start = 0;
+		while (start < size){
+			long next = (start + target >= size) ? size : findGameStart(channel, start + target);
+			if (count == bounds.length)
+				bounds = java.util.Arrays.copyOf(bounds, 2 * count);
+			bounds[count++] = next;
+			start = next;
+		}
+		if (size == 0)
+			bounds[count++] = 0;
+		return java.util.Arrays.copyOf(bounds, count);
+	}
+	
+	/**
+	 * Finds the first game that starts at or after an offset: a line
+	 * starting with '[' that follows a blank line.
+	 * @return - the offset of its '[', or the file size if there is none
+	 */
+	private static long findGameStart(FileChannel channel, long from) throws IOException {
+		ByteBuffer scan = ByteBuffer.allocate(SCAN_BYTES);
+		int newlines = 0;
+		long offset = from;
+		
+		while (channel.read(scan, offset) > 0){
+			scan.flip();
+			for (int i = 0; i < scan.limit(); i++){
+				byte c = scan.get(i);
+				if (c == '[' && newlines >= 2)
+					return offset + i;
+				if (c == '\n')
+					newlines++;
+				else if (c != '\r')
+					newlines = 0;
+			}
+			offset += scan.limit();
+			scan.clear();
+		}
+		return channel.size();
+	}
+	
+	/**
+	 * Carries an IOException out of a fork/join task.
+	 */
+	private static class ShardException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		
+		ShardException(IOException cause){
+			super(cause);
+		}
+		
+		@Override
+		public IOException getCause(){
+			return (IOException) super.getCause();
+		}
+	}
+	
+	/**
+	 * Validates the shards from first up to, but not including, last,
+	 * splitting the range in two until a single shard is left.
+	 */
+	private static class ShardTask extends RecursiveTask<ValidationReport> {
+		private static final long serialVersionUID = 1L;
+		
+		private FileChannel channel;
+		private long[] bounds;
+		private int first;
+		private int last;
+		
+		ShardTask(FileChannel channel, long[] bounds, int first, int last){
+			this.channel = channel;
+			this.bounds = bounds;
+			this.first = first;
+			this.last = last;
+		}
+		
+		@Override
+		protected ValidationReport compute(){
+			if (last - first <= 1)
+				return validateShard();
+			
+			int middle = (first + last) >>> 1;
+			ShardTask earlier = new ShardTask(channel, bounds, first, middle);
+			ShardTask later = new ShardTask(channel, bounds, middle, last);
+			earlier.fork();
+			ValidationReport laterReport = later.compute();
+			return earlier.join().merge(laterReport);
+		}
+		
+		private ValidationReport validateShard(){
+			ValidationReport report = new ValidationReport();
+			long start = bounds[first];
+			long length = bounds[last] - start;
+			if (length == 0)
+				return report;
+			
+			try {
+				if (length > Integer.MAX_VALUE)
+					throw new IOException("No game boundary within 2 GB after offset " + start);
+				MappedByteBuffer games = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+				PgnReader reader = new PgnReader(games);
+				
+				PgnGame game;
+				while ((game = reader.next()) != null){
+					report.add(game);
+				}
+				return report;
+			} catch (IOException e) {
+				throw new ShardException(e);
+			}
+		}
+	}
+}
@@ -4,6 +4,29 @@ public class Bishop extends Piece{
 		super(board, color, xLoc, yLoc);
 	}
 	
+	public int getPieceType(){
+		return BISHOP;
+	}
+	
+	public int generateMoves(int[] moves, int count){
+		if (chessBoard.isStandard() && onBoard())
+			return addTargetMoves(Magic.bishopAttacks(chessBoard.squareIndex(getXLocation(), getYLocation()),
+					occupiedSquares()), moves, count);
+		return generateRayMoves(DIAGONAL_X, DIAGONAL_Y, moves, count);
+	}
+	
+	public void markAttacks(int xPosition, int yPosition, int delta){
+		if (chessBoard.isStandard())
+			chessBoard.addAttacks(getColor(), Magic.bishopAttacks(chessBoard.squareIndex(xPosition, yPosition),
+					occupiedSquares()), delta);
+		else
+			markRayAttacks(xPosition, yPosition, DIAGONAL_X, DIAGONAL_Y, delta);
+	}
+	
+	public boolean slidesAlong(int xStep, int yStep){
+		return xStep != 0 && yStep != 0;
+	}
+	
 	public boolean canMoveTo(int xPosition, int yPosition){
 		if(canMoveGenerics(xPosition,yPosition)){
 			return bishopMovement(xPosition, yPosition);
@@ -0,0 +1,139 @@
+
+public class BitBoard {
+	public static final int MAX_SQUARES = 64;
+	private static final int STANDARD_DIMENSION = 8;
+	private static final long[] STANDARD_BETWEEN = buildStandardBetween();
+	
+	private long[] pieceBitboards;
+	private long[] colorBitboards;
+	private long occupied;
+	private int yDimension;
+	private boolean standardBoard;
+	
+	/**
+	 * Creates an empty bitboard for a board of the given size.
+	 * Squares are numbered x * yDimension + y, so the board
+	 * must not have more than 64 squares.
+	 * @param xDimension number of rows on the board
+	 * @param yDimension number of columns on the board
+	 */
+	public BitBoard(int xDimension, int yDimension){
+		this.yDimension = yDimension;
+		this.standardBoard = xDimension == STANDARD_DIMENSION && yDimension == STANDARD_DIMENSION;
+		pieceBitboards = new long[2 * Piece.PIECE_TYPES];
+		colorBitboards = new long[2];
+		occupied = 0L;
+	}
+	
+	/**
+	 * Checks whether a board of the given size fits in one long per mask
+	 * @param xDimension number of rows on the board
+	 * @param yDimension number of columns on the board
+	 * @return true if a bitboard can represent the board
+	 */
+	public static boolean fits(int xDimension, int yDimension){
+		return xDimension > 0 && yDimension > 0 && xDimension * yDimension <= MAX_SQUARES;
+	}
+	
+	/**
+	 * Marks a square as holding a piece of the given color and type
+	 * @param square square index of the piece
+	 * @param color color of the piece
+	 * @param type type of the piece
+	 */
+	public void addPiece(int square, int color, int type){
+		long mask = 1L << square;
+		pieceBitboards[color * Piece.PIECE_TYPES + type] |= mask;
+		colorBitboards[color] |= mask;
+		occupied |= mask;
+	}
+	
+	/**
+	 * Clears a square that held a piece of the given color and type
+	 * @param square square index of the piece
+	 * @param color color of the piece
+	 * @param type type of the piece
+	 */
+	public void removePiece(int square, int color, int type){
+		long mask = ~(1L << square);
+		pieceBitboards[color * Piece.PIECE_TYPES + type] &= mask;
+		colorBitboards[color] &= mask;
+		occupied &= mask;
+	}
+	
+	public boolean isOccupied(int square){
+		return (occupied & (1L << square)) != 0;
+	}
+	
+	public boolean isOccupiedBy(int square, int color){
+		return (colorBitboards[color] & (1L << square)) != 0;
+	}
+	
+	/**
+	 * Checks that every square strictly between two squares on a
+	 * shared rank, file or diagonal is empty.
+	 *
+	 * ASSERT that the squares are in line with each other.
+	 * @return true if no piece is in between
+	 */
+	public boolean isPathClear(int xFrom, int yFrom, int xTo, int yTo){
+		int from = xFrom * yDimension + yFrom;
+		int to = xTo * yDimension + yTo;
+		
+		if (standardBoard)
+			return (STANDARD_BETWEEN[from * MAX_SQUARES + to] & occupied) == 0;
+		
+		return (betweenMask(xFrom, yFrom, xTo, yTo, yDimension) & occupied) == 0;
+	}
+	
+	/**
+	 * Builds the mask of squares strictly between two squares in line.
+	 */
+	private static long betweenMask(int xFrom, int yFrom, int xTo, int yTo, int yDimension){
+		int xStep = Integer.signum(xTo - xFrom);
+		int yStep = Integer.signum(yTo - yFrom);
+		long mask = 0L;
+		
+		int x = xFrom + xStep;
+		int y = yFrom + yStep;
+		for (; x != xTo || y != yTo; x += xStep, y += yStep){
+			mask |= 1L << (x * yDimension + y);
+		}
+		return mask;
+	}
+	
+	private static long[] buildStandardBetween(){
+		long[] between = new long[MAX_SQUARES * MAX_SQUARES];
+		
+		for (int from = 0; from < MAX_SQUARES; from++){
+			for (int to = 0; to < MAX_SQUARES; to++){
+				int xFrom = from / STANDARD_DIMENSION;
+				int yFrom = from % STANDARD_DIMENSION;
+				int xTo = to / STANDARD_DIMENSION;
+				int yTo = to % STANDARD_DIMENSION;
+				int xTotal = Math.abs(xTo - xFrom);
+				int yTotal = Math.abs(yTo - yFrom);
+				
+				// Only squares sharing a line have anything in between
+				if (from != to && (xTotal == 0 || yTotal == 0 || xTotal == yTotal))
+					between[from * MAX_SQUARES + to] =
+						betweenMask(xFrom, yFrom, xTo, yTo, STANDARD_DIMENSION);
+			}
+		}
+		return between;
+	}
+	
+	// Getters/Setters below
+	
+	public long getOccupied(){
+		return occupied;
+	}
+	
+	public long getColorOccupancy(int color){
+		return colorBitboards[color];
+	}
+	
+	public long getPieces(int color, int type){
+		return pieceBitboards[color * Piece.PIECE_TYPES + type];
+	}
+}
@@ -1,9 +1,63 @@
 
+/**
+ * A rectangular board of any size. Pieces are kept in a padded mailbox:
+ * a one-dimensional array holding each row plus a border column, with
+ * two border rows above and below, so that a step of up to two squares
+ * in any direction from a square on the board lands inside the array.
+ * Border entries hold a sentinel, which makes an off-board check a
+ * single comparison and a walk along a ray one index loop. On 8x8 this
+ * is the classic 10x12 layout. The attack maps use the same indices.
+ */
 public class Board {
-	private Piece[][] chessBoard;
+	// Border rows above and below the board, enough for a knight's jump
+	private static final int PADDING_ROWS = 2;
+	// Stands on every border entry of the mailbox
+	private static final Piece OFF_BOARD = new Piece(null, -1);
+	
+	private Piece[] mailbox;
+	private int xDimension;
+	private int yDimension;
+	private int paddedStride;
+	private int[] paddedIndices;
+	private BitBoard bitBoard;
+	private PieceList[] pieceLists;
+	private int squareStride;
+	private int[][] attackCounts;
+	private long positionKey;
+	private long pawnKey;
+	private int[] materialScores;
+	private int[] pieceSquareScores;
+	private boolean standardBoard;
+	
+	// The eight directions a sliding piece can attack along
+	private static final int[] RAY_X = {1, -1, 0, 0, 1, 1, -1, -1};
+	private static final int[] RAY_Y = {0, 0, 1, -1, 1, -1, 1, -1};
 	
 	public Board(int xDimension, int yDimension){
-		chessBoard = new Piece[xDimension][yDimension];
+		this.xDimension = xDimension;
+		this.yDimension = yDimension;
+		squareStride = yDimension;
+		paddedStride = yDimension + 2;
+		mailbox = new Piece[(xDimension + 2 * PADDING_ROWS) * paddedStride];
+		java.util.Arrays.fill(mailbox, OFF_BOARD);
+		paddedIndices = new int[xDimension * yDimension];
+		for (int x = 0; x < xDimension; x++){
+			for (int y = 0; y < yDimension; y++){
+				paddedIndices[squareIndex(x, y)] = mailboxIndex(x, y);
+				mailbox[mailboxIndex(x, y)] = null;
+			}
+		}
+		attackCounts = new int[2][mailbox.length];
+		pieceLists = new PieceList[] {new PieceList(xDimension * yDimension),
+				new PieceList(xDimension * yDimension)};
+		materialScores = new int[2];
+		pieceSquareScores = new int[2];
+		standardBoard = (xDimension == 8 && yDimension == 8);
+		
+		// Boards of up to 64 squares also keep a bitboard copy,
+		// so that occupancy checks become mask tests.
+		if (BitBoard.fits(xDimension, yDimension))
+			bitBoard = new BitBoard(xDimension, yDimension);
 	}
 	
 	/**
@@ -15,12 +69,167 @@ public class Board {
 	 */
 	public boolean isEmptyPosition(int xPosition, int yPosition){
 		if (isInBounds(xPosition, yPosition)){
-			if (chessBoard[xPosition][yPosition] == null)
+			if (bitBoard != null)
+				return !bitBoard.isOccupied(squareIndex(xPosition, yPosition));
+			if (mailbox[mailboxIndex(xPosition, yPosition)] == null)
 				return true;
 		}
 		return false;
 	}
 	
+	/**
+	 * Checks that every spot strictly between two spots on a
+	 * shared row, column or diagonal is empty.
+	 * 
+	 * ASSERT that both spots are in bounds and in line.
+	 * @param xFrom x position of the starting spot
+	 * @param yFrom y position of the starting spot
+	 * @param xTo x position of the target spot
+	 * @param yTo y position of the target spot
+	 * @return true if no piece is in between
+	 */
+	public boolean isPathClear(int xFrom, int yFrom, int xTo, int yTo){
+		if (bitBoard != null)
+			return bitBoard.isPathClear(xFrom, yFrom, xTo, yTo);
+		
+		int offset = mailboxOffset(Integer.signum(xTo - xFrom), Integer.signum(yTo - yFrom));
+		int target = mailboxIndex(xTo, yTo);
+		
+		for (int index = mailboxIndex(xFrom, yFrom) + offset; index != target; index += offset){
+			if (mailbox[index] != null)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks whether any piece of the given color attacks a spot.
+	 * Read from the attack maps, which are kept up to date
+	 * on every placement and removal.
+	 * @param xPosition x position of target
+	 * @param yPosition y position of target
+	 * @param color color of the attacking side
+	 * @return true if the spot is attacked
+	 */
+	public boolean isAttacked(int xPosition, int yPosition, int color){
+		if (isInBounds(xPosition, yPosition))
+			return attackCounts[color][mailboxIndex(xPosition, yPosition)] > 0;
+		return false;
+	}
+	
+	/**
+	 * Counts the pieces of the given color that attack a spot.
+	 * Pieces defending an ally on that spot are counted too.
+	 * @param xPosition x position of target
+	 * @param yPosition y position of target
+	 * @param color color of the attacking side
+	 * @return number of attackers, 0 if out of bounds
+	 */
+	public int getAttackCount(int xPosition, int yPosition, int color){
+		if (isInBounds(xPosition, yPosition))
+			return attackCounts[color][mailboxIndex(xPosition, yPosition)];
+		return 0;
+	}
+	
+	/**
+	 * Adjusts the attack map of one color at a spot.
+	 * Called by pieces while marking the spots they attack;
+	 * out of bounds spots are ignored.
+	 * @param color color of the attacking piece
+	 * @param xPosition x position of target
+	 * @param yPosition y position of target
+	 * @param delta 1 to add an attack, -1 to take it away
+	 */
+	public void addAttack(int color, int xPosition, int yPosition, int delta){
+		if (isInBounds(xPosition, yPosition))
+			attackCounts[color][mailboxIndex(xPosition, yPosition)] += delta;
+	}
+	
+	/**
+	 * Adjusts the attack map of one color at a mailbox index.
+	 * 
+	 * ASSERT that the index is on the board.
+	 * @param color color of the attacking piece
+	 * @param index mailbox index of target
+	 * @param delta 1 to add an attack, -1 to take it away
+	 */
+	public void addAttackAt(int color, int index, int delta){
+		attackCounts[color][index] += delta;
+	}
+	
+	/**
+	 * Adjusts the attack map of one color at every square of a
+	 * bitboard, for boards that keep one.
+	 * @param color color of the attacking piece
+	 * @param squares the squares attacked
+	 * @param delta 1 to add the attacks, -1 to take them away
+	 */
+	public void addAttacks(int color, long squares, int delta){
+		for (; squares != 0; squares &= squares - 1){
+			attackCounts[color][paddedIndices[Long.numberOfTrailingZeros(squares)]] += delta;
+		}
+	}
+	
+	/**
+	 * Converts a location into its square number, counting
+	 * along each row.
+	 * 
+	 * ASSERT that the location is in bounds.
+	 * @param xPosition x position of target
+	 * @param yPosition y position of target
+	 * @return the square number of the location
+	 */
+	public int squareIndex(int xPosition, int yPosition){
+		return xPosition * squareStride + yPosition;
+	}
+	
+	/**
+	 * Converts a location into its index in the padded mailbox.
+	 * 
+	 * ASSERT that the location is in bounds.
+	 * @param xPosition x position of target
+	 * @param yPosition y position of target
+	 * @return the mailbox index of the location
+	 */
+	public int mailboxIndex(int xPosition, int yPosition){
+		return (xPosition + PADDING_ROWS) * paddedStride + yPosition + 1;
+	}
+	
+	/**
+	 * Converts a step into the change of mailbox index it makes.
+	 * Steps of up to two squares each way stay inside the mailbox.
+	 * @param xStep x part of the step
+	 * @param yStep y part of the step
+	 * @return the index offset of the step
+	 */
+	public int mailboxOffset(int xStep, int yStep){
+		return xStep * paddedStride + yStep;
+	}
+	
+	/**
+	 * Checks whether a mailbox index lies on the border
+	 * around the board.
+	 * 
+	 * ASSERT that the index was reached by steps of up to two
+	 * squares from a square on the board.
+	 * @param index mailbox index of target
+	 * @return true if the index is off the board
+	 */
+	public boolean isOffBoard(int index){
+		return mailbox[index] == OFF_BOARD;
+	}
+	
+	/**
+	 * Returns the chess piece at a mailbox index.
+	 * 
+	 * ASSERT that the index is on the board.
+	 * @param index mailbox index of target
+	 * @return The chesspiece at given index, null otherwise
+	 */
+	public Piece pieceAtIndex(int index){
+		return mailbox[index];
+	}
+	
 	/**
 	 * Checks if a location is in bounds of the current chess board
 	 * @param xPosition x position of target
@@ -28,8 +237,8 @@ public class Board {
 	 * @return true if location is in bounds
 	 */
 	public boolean isInBounds(int xPosition, int yPosition){
-		if (xPosition < getXDimension() && xPosition >= 0 &&
-				yPosition < getYDimension() && yPosition >= 0)
+		if (xPosition < xDimension && xPosition >= 0 &&
+				yPosition < yDimension && yPosition >= 0)
 			return true;
 		return false;
 	}
@@ -42,7 +251,7 @@ public class Board {
 	 */
 	public Piece pieceAt(int xPosition, int yPosition){
 		if (isInBounds(xPosition, yPosition)){
-			return chessBoard[xPosition][yPosition];
+			return mailbox[mailboxIndex(xPosition, yPosition)];
 		}
 		return null;
 	}
@@ -55,20 +264,21 @@ public class Board {
 	public void displayBoard(){
 		for (int xBoard = 0; xBoard < getXDimension(); xBoard++){
 			for (int yBoard = 0; yBoard < getYDimension(); yBoard++){
-				if (chessBoard[xBoard][yBoard] == null)
+				Piece piece = mailbox[mailboxIndex(xBoard, yBoard)];
+				if (piece == null)
 					System.out.print(".");
 				else{
-					if (chessBoard[xBoard][yBoard] instanceof Pawn)
+					if (piece instanceof Pawn)
 						System.out.print("p");
-					else if (chessBoard[xBoard][yBoard] instanceof Knight)
+					else if (piece instanceof Knight)
 						System.out.print("k");
-					else if (chessBoard[xBoard][yBoard] instanceof Queen)
+					else if (piece instanceof Queen)
 						System.out.print("q");
-					else if (chessBoard[xBoard][yBoard] instanceof King)
+					else if (piece instanceof King)
 						System.out.print("K");
-					else if (chessBoard[xBoard][yBoard] instanceof Rook)
+					else if (piece instanceof Rook)
 						System.out.print("r");
-					else if (chessBoard[xBoard][yBoard] instanceof Bishop)
+					else if (piece instanceof Bishop)
 						System.out.print("b");
 					else
 						System.out.print("x");
@@ -80,27 +290,187 @@ public class Board {
 	
 	// Getters/Setters below
 	
+	/**
+	 * Number of rows, the range of x positions.
+	 */
 	public int getXDimension(){
-		return chessBoard[0].length;
+		return xDimension;
 	}
 	
+	/**
+	 * Number of columns, the range of y positions.
+	 */
 	public int getYDimension(){
-		return chessBoard.length;
+		return yDimension;
+	}
+	
+	/**
+	 * Checks whether this is the standard 8x8 board, on which
+	 * sliding pieces read their attacks from the Magic tables.
+	 */
+	public boolean isStandard(){
+		return standardBoard;
 	}
 	
-	public Piece[][] getChessBoard(){
-		return chessBoard;
+	/**
+	 * Returns the bitboard copy of this board.
+	 * @return the bitboard, or null if the board has more than 64 squares
+	 */
+	public BitBoard getBitBoard(){
+		return bitBoard;
+	}
+	
+	/**
+	 * Returns the pieces of one color standing on the board.
+	 * The list is updated in place as pieces come and go.
+	 * @param color color of the pieces
+	 * @return the live piece list of that color
+	 */
+	public PieceList getPieceList(int color){
+		return pieceLists[color];
+	}
+	
+	/**
+	 * Total material of one color's pieces on the board.
+	 * @param color color of the pieces
+	 * @return the sum of Evaluation.pieceValue over those pieces
+	 */
+	public int getMaterial(int color){
+		return materialScores[color];
+	}
+	
+	/**
+	 * Total piece-square bonus of one color's pieces on the board.
+	 * @param color color of the pieces
+	 * @return the bonus, 0 on boards other than 8x8
+	 */
+	public int getPieceSquareScore(int color){
+		return pieceSquareScores[color];
+	}
+	
+	/**
+	 * Returns the Zobrist key of the pieces on the board,
+	 * kept up to date on every placement and removal.
+	 * @return the XOR of the keys of every piece on its square
+	 */
+	public long getPositionKey(){
+		return positionKey;
+	}
+	
+	/**
+	 * Returns the Zobrist key of the pawns alone, for caching
+	 * pawn structure terms that depend on nothing else.
+	 * @return the XOR of the keys of every pawn on its square, 0 without pawns
+	 */
+	public long getPawnKey(){
+		return pawnKey;
 	}
 
 	public void removeFromBoard(Piece removePiece){
 		int oldXLocation = removePiece.getXLocation();
 		int oldYLocation = removePiece.getYLocation();
 		
-		chessBoard[oldXLocation][oldYLocation] = null;
+		if (isInBounds(oldXLocation, oldYLocation))
+			setSquare(oldXLocation, oldYLocation, null);
 	}
 
 	public void placePiece(Piece chessPiece, int xPosition, int yPosition){
 		if (isInBounds(xPosition, yPosition))
-			chessBoard[xPosition][yPosition] = chessPiece;
+			setSquare(xPosition, yPosition, chessPiece);
+	}
+	
+	/**
+	 * Stores a piece (or null) at a location, keeping the piece
+	 * lists, the bitboard copy, the position key, the evaluation
+	 * scores and the attack maps in step with the piece array.
+	 */
+	private void setSquare(int xPosition, int yPosition, Piece chessPiece){
+		int index = mailboxIndex(xPosition, yPosition);
+		Piece oldPiece = mailbox[index];
+		
+		if (oldPiece != null)
+			oldPiece.markAttacks(xPosition, yPosition, -1);
+		
+		mailbox[index] = chessPiece;
+		
+		int square = squareIndex(xPosition, yPosition);
+		if (oldPiece != null){
+			updateScores(oldPiece, xPosition, yPosition, -1);
+			toggleKeys(oldPiece, square);
+			pieceLists[oldPiece.getColor()].remove(square);
+			if (bitBoard != null)
+				bitBoard.removePiece(square, oldPiece.getColor(), oldPiece.getPieceType());
+		}
+		if (chessPiece != null){
+			updateScores(chessPiece, xPosition, yPosition, 1);
+			toggleKeys(chessPiece, square);
+			pieceLists[chessPiece.getColor()].add(chessPiece, square);
+			if (bitBoard != null)
+				bitBoard.addPiece(square, chessPiece.getColor(), chessPiece.getPieceType());
+		}
+		
+		// A spot that fills up blocks the sliding pieces aimed
+		// through it, and one that empties lets them through.
+		if (oldPiece == null && chessPiece != null)
+			updateRaysThrough(index, -1);
+		else if (oldPiece != null && chessPiece == null)
+			updateRaysThrough(index, 1);
+		
+		if (chessPiece != null)
+			chessPiece.markAttacks(xPosition, yPosition, 1);
+	}
+	
+	/**
+	 * XORs a piece's key into the position key, and into the
+	 * pawn key as well if the piece is a pawn.
+	 */
+	private void toggleKeys(Piece chessPiece, int square){
+		long key = Zobrist.pieceKey(chessPiece.getColor(), chessPiece.getPieceType(), square);
+		
+		positionKey ^= key;
+		if (chessPiece.getPieceType() == Piece.PAWN)
+			pawnKey ^= key;
+	}
+	
+	/**
+	 * Adds or takes away a piece's material and piece-square score.
+	 * Piece-square scores are only kept on standard 8x8 boards.
+	 */
+	private void updateScores(Piece chessPiece, int xPosition, int yPosition, int sign){
+		int color = chessPiece.getColor();
+		int type = chessPiece.getPieceType();
+		
+		materialScores[color] += sign * Evaluation.pieceValue(type);
+		if (standardBoard)
+			pieceSquareScores[color] += sign
+					* Evaluation.pieceSquareValue(color, type, xPosition, yPosition);
+	}
+	
+	/**
+	 * Finds the sliding pieces whose attack passes through a spot
+	 * and adjusts their attacks on the spots behind it, up to and
+	 * including the next piece.
+	 * @param index mailbox index of the spot that changed
+	 * @param delta 1 if the spot was emptied, -1 if it was filled
+	 */
+	private void updateRaysThrough(int index, int delta){
+		for (int i = 0; i < RAY_X.length; i++){
+			int offset = mailboxOffset(RAY_X[i], RAY_Y[i]);
+			int sliderIndex = index + offset;
+			
+			while (mailbox[sliderIndex] == null){
+				sliderIndex += offset;
+			}
+			Piece slider = mailbox[sliderIndex];
+			if (slider == OFF_BOARD || !slider.slidesAlong(-RAY_X[i], -RAY_Y[i]))
+				continue;
+			
+			int[] counts = attackCounts[slider.getColor()];
+			for (int behind = index - offset; mailbox[behind] != OFF_BOARD; behind -= offset){
+				counts[behind] += delta;
+				if (mailbox[behind] != null)
+					break;
+			}
+		}
 	}
 }
@@ -0,0 +1,309 @@
+
+/**
+ * Scores positions for the search, in centipawns.
+ *
+ * Material and piece-square terms are kept up to date by the Board
+ * on every placement and removal, so they cost a few reads here.
+ * Pawn structure (doubled, isolated and passed pawns) and king safety
+ * (pawn shield and attacked squares around the king) are worked out
+ * from the bitboards when a position is scored, on standard boards only.
+ * Pawn structure results are cached in a PawnHashTable, so they are only
+ * worked out again when a pawn has moved or been taken.
+ */
+public class Evaluation {
+	// Material by piece type: pawn, knight, bishop, rook, queen, king, generic
+	private static final int[] PIECE_VALUES = {100, 320, 330, 500, 900, 0, 0};
+	
+	private static final int STANDARD_DIMENSION = 8;
+	
+	// Piece-square tables from white's side, row x = 0 first.
+	// Black reads them upside down.
+	private static final int[][] PIECE_SQUARE_TABLES = {
+		{ // Pawn
+			  0,   0,   0,   0,   0,   0,   0,   0,
+			 50,  50,  50,  50,  50,  50,  50,  50,
+			 10,  10,  20,  30,  30,  20,  10,  10,
+			  5,   5,  10,  25,  25,  10,   5,   5,
+			  0,   0,   0,  20,  20,   0,   0,   0,
+			  5,  -5, -10,   0,   0, -10,  -5,   5,
+			  5,  10,  10, -20, -20,  10,  10,   5,
+			  0,   0,   0,   0,   0,   0,   0,   0,
+		},
+		{ // Knight
+			-50, -40, -30, -30, -30, -30, -40, -50,
+			-40, -20,   0,   0,   0,   0, -20, -40,
+			-30,   0,  10,  15,  15,  10,   0, -30,
+			-30,   5,  15,  20,  20,  15,   5, -30,
+			-30,   0,  15,  20,  20,  15,   0, -30,
+			-30,   5,  10,  15,  15,  10,   5, -30,
+			-40, -20,   0,   5,   5,   0, -20, -40,
+			-50, -40, -30, -30, -30, -30, -40, -50,
+		},
+		{ // Bishop
+			-20, -10, -10, -10, -10, -10, -10, -20,
+			-10,   0,   0,   0,   0,   0,   0, -10,
+			-10,   0,   5,  10,  10,   5,   0, -10,
+			-10,   5,   5,  10,  10,   5,   5, -10,
+			-10,   0,  10,  10,  10,  10,   0, -10,
+			-10,  10,  10,  10,  10,  10,  10, -10,
+			-10,   5,   0,   0,   0,   0,   5, -10,
+			-20, -10, -10, -10, -10, -10, -10, -20,
+		},
+		{ // Rook
+			  0,   0,   0,   0,   0,   0,   0,   0,
+			  5,  10,  10,  10,  10,  10,  10,   5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			  0,   0,   0,   5,   5,   0,   0,   0,
+		},
+		{ // Queen
+			-20, -10, -10,  -5,  -5, -10, -10, -20,
+			-10,   0,   0,   0,   0,   0,   0, -10,
+			-10,   0,   5,   5,   5,   5,   0, -10,
+			 -5,   0,   5,   5,   5,   5,   0,  -5,
+			  0,   0,   5,   5,   5,   5,   0,  -5,
+			-10,   5,   5,   5,   5,   5,   0, -10,
+			-10,   0,   5,   0,   0,   0,   0, -10,
+			-20, -10, -10,  -5,  -5, -10, -10, -20,
+		},
+		{ // King
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-20, -30, -30, -40, -40, -30, -30, -20,
+			-10, -20, -20, -20, -20, -20, -20, -10,
+			 20,  20,   0,   0,   0,   0,  20,  20,
+			 20,  30,  10,   0,   0,  10,  30,  20,
+		},
+		new int[64], // Generic
+	};
+	
+	private static final int DOUBLED_PAWN_PENALTY = 15;
+	private static final int ISOLATED_PAWN_PENALTY = 12;
+	// Passed pawn bonus by rows advanced from the starting row
+	private static final int[] PASSED_PAWN_BONUS = {0, 5, 10, 20, 35, 60, 100, 0};
+	private static final int BLOCKED_PASSED_PAWN_PENALTY = 10;
+	private static final int MISSING_SHIELD_PENALTY = 12;
+	private static final int KING_ZONE_ATTACK_PENALTY = 8;
+	
+	private static final long FILE_A = 0x0101010101010101L;
+	
+	private static final int DEFAULT_PAWN_TABLE_KILOBYTES = 256;
+	
+	private PawnHashTable pawnTable;
+	
+	public Evaluation(){
+		this(new PawnHashTable(DEFAULT_PAWN_TABLE_KILOBYTES));
+	}
+	
+	/**
+	 * @param pawnTable - cache of pawn structure results, used only
+	 * by this evaluation's thread
+	 */
+	public Evaluation(PawnHashTable pawnTable){
+		this.pawnTable = pawnTable;
+	}
+	
+	/**
+	 * Scores the current position of a game.
+	 * @param game - the game to score
+	 * @return - the score from the view of the player to move
+	 */
+	public int evaluate(Game game){
+		Board board = game.getBoard();
+		int score = board.getMaterial(Game.WHITE) - board.getMaterial(Game.BLACK)
+				+ board.getPieceSquareScore(Game.WHITE) - board.getPieceSquareScore(Game.BLACK);
+		
+		BitBoard bits = board.getBitBoard();
+		if (bits != null && board.isStandard()){
+			score += pawnStructure(board, bits);
+			score += kingSafety(board, bits, game.getWhiteKing(), Game.WHITE)
+					- kingSafety(board, bits, game.getBlackKing(), Game.BLACK);
+		}
+		return (game.getPlayerTurn() == Game.WHITE) ? score : -score;
+	}
+	
+	/**
+	 * Material value of a piece type.
+	 */
+	public static int pieceValue(int type){
+		return PIECE_VALUES[type];
+	}
+	
+	/**
+	 * Piece-square bonus of a piece on a standard 8x8 board.
+	 * @param color - color of the piece
+	 * @param type - type of the piece
+	 * @param xPosition - x location of the piece
+	 * @param yPosition - y location of the piece
+	 * @return - the bonus, from the piece owner's view
+	 */
+	public static int pieceSquareValue(int color, int type, int xPosition, int yPosition){
+		int row = (color == Game.WHITE) ? xPosition : STANDARD_DIMENSION - 1 - xPosition;
+		return PIECE_SQUARE_TABLES[type][row * STANDARD_DIMENSION + yPosition];
+	}
+	
+	/**
+	 * Pawn structure score of both sides, white minus black. The
+	 * pawn-only part comes from the pawn table when it is there;
+	 * passed pawns with a piece in front of them are marked down.
+	 */
+	protected int pawnStructure(Board board, BitBoard bits){
+		long pawnKey = board.getPawnKey();
+		int slot = pawnTable.find(pawnKey);
+		
+		if (slot < 0){
+			long whitePawns = bits.getPieces(Game.WHITE, Piece.PAWN);
+			long blackPawns = bits.getPieces(Game.BLACK, Piece.PAWN);
+			long whitePassed = passedPawns(whitePawns, blackPawns, Game.WHITE);
+			long blackPassed = passedPawns(blackPawns, whitePawns, Game.BLACK);
+			int score = scorePawns(whitePawns, whitePassed, Game.WHITE)
+					- scorePawns(blackPawns, blackPassed, Game.BLACK);
+			slot = pawnTable.store(pawnKey, score, blackPassed, whitePassed);
+		}
+		
+		// The square in front of a white pawn is 8 lower, of a black one 8 higher
+		long occupied = bits.getOccupied();
+		long whiteBlocked = (pawnTable.getPassedPawns(slot, Game.WHITE) >>> STANDARD_DIMENSION) & occupied;
+		long blackBlocked = (pawnTable.getPassedPawns(slot, Game.BLACK) << STANDARD_DIMENSION) & occupied;
+		return pawnTable.getScore(slot)
+				- BLOCKED_PASSED_PAWN_PENALTY * (Long.bitCount(whiteBlocked) - Long.bitCount(blackBlocked));
+	}
+	
+	public PawnHashTable getPawnTable(){
+		return pawnTable;
+	}
+	
+	/**
+	 * Pawn structure score of one side.
+	 * @param pawns - the side's pawns
+	 * @param enemyPawns - the other side's pawns
+	 * @param color - the side being scored
+	 * @return - bonus for passed pawns less penalties for weak ones
+	 */
+	protected static int pawnStructure(long pawns, long enemyPawns, int color){
+		return scorePawns(pawns, passedPawns(pawns, enemyPawns, color), color);
+	}
+	
+	private static int scorePawns(long pawns, long passed, int color){
+		int score = 0;
+		
+		for (int file = 0; file < STANDARD_DIMENSION; file++){
+			long onFile = pawns & (FILE_A << file);
+			if (onFile == 0)
+				continue;
+			
+			int count = Long.bitCount(onFile);
+			score -= DOUBLED_PAWN_PENALTY * (count - 1);
+			if ((pawns & adjacentFiles(file)) == 0)
+				score -= ISOLATED_PAWN_PENALTY * count;
+		}
+		
+		while (passed != 0){
+			int square = Long.numberOfTrailingZeros(passed);
+			passed &= passed - 1;
+			int row = square / STANDARD_DIMENSION;
+			int advanced = (color == Game.WHITE) ? STANDARD_DIMENSION - 2 - row : row - 1;
+			score += PASSED_PAWN_BONUS[Math.max(0, Math.min(advanced, PASSED_PAWN_BONUS.length - 1))];
+		}
+		return score;
+	}
+	
+	/**
+	 * Picks out the pawns of one side that are passed.
+	 * @param pawns - the side's pawns
+	 * @param enemyPawns - the other side's pawns
+	 * @param color - the side's color
+	 * @return - the passed pawns, as a bitboard
+	 */
+	protected static long passedPawns(long pawns, long enemyPawns, int color){
+		long passed = 0;
+		
+		for (long remaining = pawns; remaining != 0; remaining &= remaining - 1){
+			int square = Long.numberOfTrailingZeros(remaining);
+			if (isPassed(square, enemyPawns, color))
+				passed |= 1L << square;
+		}
+		return passed;
+	}
+	
+	/**
+	 * Checks that no enemy pawn stands ahead of a pawn on its own
+	 * or a neighbouring file.
+	 */
+	protected static boolean isPassed(int square, long enemyPawns, int color){
+		return (enemyPawns & passedPawnMask(square, color)) == 0;
+	}
+	
+	/**
+	 * Squares on a pawn's own and neighbouring files in front of it.
+	 */
+	protected static long passedPawnMask(int square, int color){
+		int row = square / STANDARD_DIMENSION;
+		int file = square % STANDARD_DIMENSION;
+		long files = (FILE_A << file) | adjacentFiles(file);
+		long ahead;
+		
+		// White moves towards row 0, black towards row 7
+		if (color == Game.WHITE)
+			ahead = (1L << (row * STANDARD_DIMENSION)) - 1;
+		else if (row == STANDARD_DIMENSION - 1)
+			ahead = 0;
+		else
+			ahead = -(1L << ((row + 1) * STANDARD_DIMENSION));
+		return files & ahead;
+	}
+	
+	private static long adjacentFiles(int file){
+		long mask = 0;
+		if (file > 0)
+			mask |= FILE_A << (file - 1);
+		if (file < STANDARD_DIMENSION - 1)
+			mask |= FILE_A << (file + 1);
+		return mask;
+	}
+	
+	/**
+	 * Penalty for a king with few pawns in front of it and with
+	 * enemy attacks on the squares around it. Only counted while
+	 * the enemy still has a queen.
+	 * @return - the king owner's safety score, zero or less
+	 */
+	private static int kingSafety(Board board, BitBoard bits, King king, int color){
+		int enemy = (color == Game.WHITE) ? Game.BLACK : Game.WHITE;
+		if (!king.onBoard() || bits.getPieces(enemy, Piece.QUEEN) == 0)
+			return 0;
+		
+		int kingX = king.getXLocation();
+		int kingY = king.getYLocation();
+		int forward = (color == Game.WHITE) ? -1 : 1;
+		long pawns = bits.getPieces(color, Piece.PAWN);
+		int penalty = 0;
+		
+		for (int y = kingY - 1; y <= kingY + 1; y++){
+			if (y < 0 || y >= STANDARD_DIMENSION)
+				continue;
+			
+			// A shield pawn one or two rows in front of the king
+			boolean shielded = false;
+			for (int step = 1; step <= 2; step++){
+				int x = kingX + forward * step;
+				if (x >= 0 && x < STANDARD_DIMENSION
+						&& (pawns & (1L << (x * STANDARD_DIMENSION + y))) != 0)
+					shielded = true;
+			}
+			if (!shielded)
+				penalty += MISSING_SHIELD_PENALTY;
+			
+			for (int x = kingX - 1; x <= kingX + 1; x++){
+				if (board.isAttacked(x, y, enemy))
+					penalty += KING_ZONE_ATTACK_PENALTY;
+			}
+		}
+		return -penalty;
+	}
+}
@@ -1,5 +1,4 @@
 import java.util.Scanner;
-import java.util.LinkedList;
 
 public class Game {
 	public static final int BLACK = 0;
@@ -8,25 +7,72 @@ public class Game {
 	public final int yBlkKing = 5;
 	public final int xWhtKing = 0;
 	public final int yWhtKing = 7;
+	public static final int MAX_MOVES = 256;
+	public static final int MAX_PLY = 1024;
+	// Positions remembered for repetitions, a few more than the
+	// hundred plies after which the fifty-move rule ends the game
+	public static final int KEY_HISTORY = 128;
+	public static final int FIFTY_MOVE_PLIES = 100;
+	// FEN letters by piece type, '?' for the generic piece
+	public static final String PIECE_SYMBOLS = "pnbrqk?";
+	public static final String STANDARD_PLACEMENT = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR";
+	// The eight directions a piece can be pinned or checked along
+	private static final int[] RAY_X = {1, -1, 0, 0, 1, 1, -1, -1};
+	private static final int[] RAY_Y = {0, 0, 1, -1, 1, -1, 1, -1};
 	Scanner userInput = new Scanner(System.in);
 	
 	private int currentPlayer;
 	private Board chessBoard;
-	private LinkedList<Piece> blackPieces;
-	private LinkedList<Piece> whitePieces;
 	private King blackKing;
 	private King whiteKing;
+	private int[] moveBuffer;
+	private int halfmoveClock;
+	private int fullmoveNumber;
+	
+	// Pieces taken off by clearBoard, kept for reuse by later setups
+	private Piece[][] sparePieces;
+	private int[] spareCounts;
+	private AsciiSequence fenText;
+	
+	// Undo stack for makeMove/unmakeMove, one record per ply
+	private int[] undoMoves;
+	private Piece[] undoCaptured;
+	private boolean[] undoHasMoved;
+	private int[] undoHalfmoveClock;
+	private int undoCount;
+	
+	// Pieces pinned to the king by generateLegalMoves, with the
+	// direction from the king towards each, one per ray at most
+	private Piece[] pinnedPieces;
+	private int[] pinXSteps;
+	private int[] pinYSteps;
+	
+	// Keys of the positions before each move, a ring indexed by keyCount
+	private long[] keyHistory;
+	private int keyCount;
 	
 	public Game(){
 		chessBoard = new Board(8,8);
 		currentPlayer = WHITE;
-		blackPieces = new LinkedList<Piece>();
-		whitePieces = new LinkedList<Piece>();
+		moveBuffer = new int[MAX_MOVES];
+		undoMoves = new int[MAX_PLY];
+		undoCaptured = new Piece[MAX_PLY];
+		undoHasMoved = new boolean[MAX_PLY];
+		undoHalfmoveClock = new int[MAX_PLY];
+		undoCount = 0;
+		keyHistory = new long[KEY_HISTORY];
+		keyCount = 0;
+		pinnedPieces = new Piece[RAY_X.length];
+		pinXSteps = new int[RAY_X.length];
+		pinYSteps = new int[RAY_X.length];
+		halfmoveClock = 0;
+		fullmoveNumber = 1;
+		sparePieces = new Piece[2 * Piece.PIECE_TYPES][PieceList.DEFAULT_CAPACITY];
+		spareCounts = new int[2 * Piece.PIECE_TYPES];
+		fenText = new AsciiSequence();
 		
 		blackKing = new King(chessBoard, BLACK, xBlkKing, yBlkKing);
 		whiteKing = new King(chessBoard, WHITE, xWhtKing, yWhtKing);
-		blackPieces.add(blackKing);
-		whitePieces.add(whiteKing);
 	}
 	
 	
@@ -47,6 +93,267 @@ public class Game {
 		currentPlayer = BLACK;
 	}
 	
+	/**
+	 * Sets up the usual starting position, white to move.
+	 * Black starts on the low x rows and moves down the board.
+	 */
+	public void standardSetup() {
+		setupPosition(STANDARD_PLACEMENT, WHITE);
+	}
+	
+	/**
+	 * Replaces the pieces on the board with the ones described by
+	 * the piece placement field of a FEN record: one row per '/',
+	 * starting from x = 0, with digits for runs of empty spots.
+	 * Black pieces are lower case. Pawns away from their starting
+	 * row are treated as having moved.
+	 * 
+	 * @param placement - the piece placement, for example "8/8/8/8/8/8/8/K6k"
+	 * @param player - the player to move next
+	 */
+	public void setupPosition(CharSequence placement, int player) {
+		int end = parsePlacement(placement, 0);
+		if (end != placement.length())
+			throw new IllegalArgumentException("Unexpected text after placement: " + placement);
+		currentPlayer = player;
+	}
+	
+	/**
+	 * Sets up the position of a FEN record. The castling and en
+	 * passant fields are read past, as neither is part of the rules
+	 * here; the move counters may be left off, as in EPD.
+	 * 
+	 * The record is read straight from the CharSequence without
+	 * building any Strings, and the pieces taken off the board are
+	 * reused for the new position, so loading positions one after
+	 * another allocates nothing.
+	 * @param fen - the record, for example "8/8/8/8/8/8/8/K6k w - - 0 1"
+	 */
+	public void setupFen(CharSequence fen) {
+		int length = fen.length();
+		int i = parsePlacement(fen, 0);
+		
+		if (i + 1 >= length || fen.charAt(i) != ' ')
+			throw new IllegalArgumentException("Missing side to move: " + fen);
+		char side = fen.charAt(i + 1);
+		if (side == 'w')
+			currentPlayer = WHITE;
+		else if (side == 'b')
+			currentPlayer = BLACK;
+		else
+			throw new IllegalArgumentException("Unknown side to move: " + fen);
+		i += 2;
+		
+		// Castling rights and en passant square
+		for (int field = 0; field < 2 && i < length; field++){
+			i = skipSpaces(fen, i);
+			while (i < length && fen.charAt(i) != ' '){
+				i++;
+			}
+		}
+		
+		i = skipSpaces(fen, i);
+		if (i < length){
+			halfmoveClock = parseNumber(fen, i);
+			i = skipSpaces(fen, skipDigits(fen, i));
+		}
+		if (i < length){
+			fullmoveNumber = Math.max(1, parseNumber(fen, i));
+			i = skipSpaces(fen, skipDigits(fen, i));
+		}
+		if (i < length)
+			throw new IllegalArgumentException("Unexpected text after FEN: " + fen);
+	}
+	
+	/**
+	 * Sets up the position of a FEN record held as ASCII bytes,
+	 * for example a line of a file read into a buffer.
+	 * @param data - the bytes holding the record
+	 * @param offset - index of the record's first character
+	 * @param length - length of the record, without line ending
+	 */
+	public void setupFen(byte[] data, int offset, int length) {
+		setupFen(fenText.wrap(data, offset, length));
+	}
+	
+	/**
+	 * Reads a FEN piece placement onto an emptied board, stopping
+	 * at the first space or at the end of the text.
+	 * @return - the index just past the placement
+	 */
+	private int parsePlacement(CharSequence text, int start){
+		clearBoard();
+		halfmoveClock = 0;
+		fullmoveNumber = 1;
+		keyCount = 0;
+		int x = 0;
+		int y = 0;
+		int i = start;
+		
+		for (; i < text.length(); i++){
+			char symbol = text.charAt(i);
+			
+			if (symbol == ' '){
+				break;
+			}
+			else if (symbol == '/'){
+				x++;
+				y = 0;
+			}
+			else if (symbol >= '1' && symbol <= '9'){
+				y += symbol - '0';
+			}
+			else {
+				if (!chessBoard.isInBounds(x, y))
+					throw new IllegalArgumentException("Piece outside of board: " + text);
+				addPieceBySymbol(symbol, x, y);
+				y++;
+			}
+		}
+		
+		if (!blackKing.onBoard() || !whiteKing.onBoard())
+			throw new IllegalArgumentException("Both kings must be placed: " + text);
+		return i;
+	}
+	
+	private static int skipSpaces(CharSequence text, int i){
+		while (i < text.length() && text.charAt(i) == ' '){
+			i++;
+		}
+		return i;
+	}
+	
+	private static int skipDigits(CharSequence text, int i){
+		while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9'){
+			i++;
+		}
+		return i;
+	}
+	
+	private static int parseNumber(CharSequence text, int start){
+		int end = skipDigits(text, start);
+		if (end == start || end - start > 9)
+			throw new IllegalArgumentException("Bad move counter in FEN: " + text);
+		
+		int value = 0;
+		for (int i = start; i < end; i++){
+			value = value * 10 + (text.charAt(i) - '0');
+		}
+		return value;
+	}
+	
+	/**
+	 * Writes the current position as a FEN record. Castling and
+	 * en passant are always written as "-".
+	 * @param out - where to append the record
+	 */
+	public void appendFen(StringBuilder out){
+		for (int x = 0; x < chessBoard.getXDimension(); x++){
+			if (x > 0)
+				out.append('/');
+			
+			int empty = 0;
+			for (int y = 0; y < chessBoard.getYDimension(); y++){
+				Piece piece = chessBoard.pieceAt(x, y);
+				if (piece == null){
+					empty++;
+					continue;
+				}
+				
+				appendEmptyRun(out, empty);
+				empty = 0;
+				char symbol = PIECE_SYMBOLS.charAt(piece.getPieceType());
+				out.append(piece.getColor() == WHITE ? Character.toUpperCase(symbol) : symbol);
+			}
+			appendEmptyRun(out, empty);
+		}
+		out.append(currentPlayer == WHITE ? " w - - " : " b - - ");
+		out.append(halfmoveClock).append(' ').append(fullmoveNumber);
+	}
+	
+	/**
+	 * Writes a run of empty spots, split into digits of at most 9
+	 * for the rows of boards wider than the standard one.
+	 */
+	private static void appendEmptyRun(StringBuilder out, int empty){
+		for (; empty > 0; empty -= 9){
+			out.append((char) ('0' + Math.min(empty, 9)));
+		}
+	}
+	
+	/**
+	 * Returns the current position as a FEN record.
+	 * @return - for example "8/8/8/8/8/8/8/K6k w - - 0 1"
+	 */
+	public String toFen(){
+		StringBuilder out = new StringBuilder(90);
+		appendFen(out);
+		return out.toString();
+	}
+	
+	/**
+	 * Adds the piece named by a FEN letter at the given location,
+	 * reusing a piece taken off by clearBoard when there is one.
+	 */
+	private void addPieceBySymbol(char symbol, int xloc, int yloc){
+		int color = Character.isUpperCase(symbol) ? WHITE : BLACK;
+		int type = PIECE_SYMBOLS.indexOf(Character.toLowerCase(symbol));
+		
+		if (type < 0 || type == Piece.GENERIC)
+			throw new IllegalArgumentException("Unknown piece: " + symbol);
+		
+		Piece piece;
+		int spare = color * Piece.PIECE_TYPES + type;
+		if (type != Piece.KING && spareCounts[spare] > 0){
+			piece = sparePieces[spare][--spareCounts[spare]];
+			sparePieces[spare][spareCounts[spare]] = null;
+			piece.placeAt(xloc, yloc);
+			piece.setHasMoved(false);
+		}
+		else
+			piece = addPiece(type, color, xloc, yloc);
+		
+		if (type == Piece.PAWN){
+			int homeRow = (color == BLACK) ? 1 : chessBoard.getXDimension() - 2;
+			piece.setHasMoved(xloc != homeRow);
+		}
+	}
+	
+	/**
+	 * Takes every piece off the board and out of the game, except
+	 * the kings, which are left off the board until placed again.
+	 * Also forgets any moves waiting to be taken back.
+	 * 
+	 * The pieces taken off may be put back on the board by a later
+	 * setupPosition or setupFen.
+	 */
+	public void clearBoard() {
+		for (int color = BLACK; color <= WHITE; color++){
+			PieceList pieces = chessBoard.getPieceList(color);
+			while (pieces.size() > 0){
+				Piece piece = pieces.get(pieces.size() - 1);
+				piece.removePiece();
+				
+				int spare = color * Piece.PIECE_TYPES + piece.getPieceType();
+				if (spareCounts[spare] < sparePieces[spare].length)
+					sparePieces[spare][spareCounts[spare]++] = piece;
+			}
+		}
+		
+		clearUndoStack();
+	}
+	
+	/**
+	 * Forgets every move waiting to be taken back, letting go of
+	 * the pieces they captured.
+	 */
+	private void clearUndoStack(){
+		while (undoCount > 0){
+			undoCount--;
+			undoCaptured[undoCount] = null;
+		}
+	}
+	
 	/*
 	 * Continues to loop until game is over.
 	 * 
@@ -85,7 +392,7 @@ public class Game {
 				nextY = userInput.nextInt();
 				
 				if (target.canMoveTo(nextX, nextY)){
-					target.moveTo(nextX, nextY);
+					playMove(Move.encode(target.getXLocation(), target.getYLocation(), nextX, nextY));
 				}
 				else {
 					System.out.println("Cannot move there");
@@ -97,11 +404,9 @@ public class Game {
 	/**
 	 * Checks to see if game-ending situation has occurred
 	 * 
-	 * NOTE: few more game-ending situations should be added,
-	 * like 50 move rule, threefold repetition.
-	 * 
 	 * Added 'no legal move' draw
 	 * Added 'checkmate' end
+	 * Added fifty-move rule and threefold repetition draws
 	 * @return - True if game is over
 	 */
 	public boolean isGameOver(){
@@ -113,6 +418,60 @@ public class Game {
 			System.out.println("STALEMATE");
 			return true;
 		}
+		else if (isFiftyMoveDraw()){
+			System.out.println("DRAW BY FIFTY-MOVE RULE");
+			return true;
+		}
+		else if (getRepetitionCount() >= 3){
+			System.out.println("DRAW BY REPETITION");
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks whether fifty moves by each player have gone by
+	 * without a capture or a pawn move.
+	 * @return - True if the game is drawn by the fifty-move rule
+	 */
+	public boolean isFiftyMoveDraw(){
+		return halfmoveClock >= FIFTY_MOVE_PLIES;
+	}
+	
+	/**
+	 * Counts how often the current position has stood on the board,
+	 * now included, with the same player to move. Only the positions
+	 * since the last capture or pawn move are looked at, as none before
+	 * can be repeated, and at most KEY_HISTORY plies back.
+	 * @return - the number of times, at least 1
+	 */
+	public int getRepetitionCount(){
+		long key = getPositionKey();
+		int count = 1;
+		int plies = Math.min(halfmoveClock, Math.min(keyCount, KEY_HISTORY));
+		
+		// A position cannot come back sooner than four plies later
+		for (int i = 4; i <= plies; i += 2){
+			if (keyHistory[(keyCount - i) & (KEY_HISTORY - 1)] == key)
+				count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Checks whether the current position has stood on the board
+	 * before, since the last capture or pawn move. Cheaper than
+	 * getRepetitionCount, as the search stops at the first match.
+	 * @return - True if the position is a repetition
+	 */
+	public boolean isRepetition(){
+		long key = getPositionKey();
+		int plies = Math.min(halfmoveClock, Math.min(keyCount, KEY_HISTORY));
+		
+		for (int i = 4; i <= plies; i += 2){
+			if (keyHistory[(keyCount - i) & (KEY_HISTORY - 1)] == key)
+				return true;
+		}
 		return false;
 	}
 	
@@ -138,43 +497,273 @@ public class Game {
 	 * @return - True if the player still has valid moves
 	 */
 	public boolean canMove(int player){
-		int oldX, oldY;
-		Piece target;
-		LinkedList<Piece> checkPieces;
+		return generateLegalMoves(player, moveBuffer) > 0;
+	}
+	
+	/**
+	 * Fills a buffer with every move the given player's pieces
+	 * could make, without checking whether the move would
+	 * leave the player's king in check.
+	 * @param player - Player who's moves are being generated
+	 * @param moves - buffer to fill, at least MAX_MOVES long
+	 * @return - the number of moves placed in the buffer
+	 */
+	public int generateMoves(int player, int[] moves){
+		PieceList checkPieces = chessBoard.getPieceList(player);
+		int moveCount = 0;
 		
-		if (player == BLACK)
-			checkPieces = blackPieces;
-		else
-			checkPieces = whitePieces;
+		for (int i = 0; i < checkPieces.size(); i++){
+			moveCount = checkPieces.get(i).generateMoves(moves, moveCount);
+		}
+		return moveCount;
+	}
+	
+	/**
+	 * Fills a buffer with every legal move of the given player.
+	 * 
+	 * Instead of trying each move, the pieces checking and pinned to
+	 * the player's king are found once: in check, other pieces may only
+	 * take the checking piece or step between it and the king, a pinned
+	 * piece may only move along its pin, and the king may only step to
+	 * spots the enemy does not attack.
+	 * @param player - Player who's moves are being generated
+	 * @param moves - buffer to fill, at least MAX_MOVES long
+	 * @return - the number of moves placed in the buffer
+	 */
+	public int generateLegalMoves(int player, int[] moves){
+		King king = (player == BLACK) ? blackKing : whiteKing;
+		int moveCount = generateMoves(player, moves);
+		if (!king.onBoard())
+			return moveCount;
 		
-		for (int x = 0; x < chessBoard.getXDimension(); x++){
-			for (int y = 0; y < chessBoard.getYDimension(); y++){	
-				// If any piece can move to this spot, move here
-				// If king is still in check, then go to next location.
-				for (Piece currentPiece : checkPieces){
-					if (currentPiece.canMoveTo(x, y)){
-						//System.out.println(x + ", " + y);
-						target = chessBoard.pieceAt(x, y);
-						oldX = currentPiece.getXLocation();
-						oldY = currentPiece.getYLocation();
-						
-						currentPiece.moveTo(x, y);
-						
-						if (!isKingInCheck(player)){
-							currentPiece.moveTo(oldX, oldY);
-							if (target != null)
-								target.moveTo(x, y);
-							return true;
-						} else {
-							currentPiece.moveTo(oldX, oldY);
-							if (target != null)
-								target.moveTo(x, y);
-						}
-					}
+		int enemyColor = 1 - player;
+		int checks = chessBoard.getAttackCount(king.getXLocation(), king.getYLocation(), enemyColor);
+		Piece checker = (checks == 1) ? findChecker(king, enemyColor) : null;
+		int pinCount = findPins(king);
+		int legalCount = 0;
+		
+		for (int i = 0; i < moveCount; i++){
+			if (isLegalMove(moves[i], king, checks, checker, pinCount))
+				moves[legalCount++] = moves[i];
+		}
+		return legalCount;
+	}
+	
+	/**
+	 * Checks a generated move against the checks and pins
+	 * found by generateLegalMoves.
+	 * @param move - the packed move
+	 * @param king - king of the player making the move
+	 * @param checks - number of enemy pieces giving check
+	 * @param checker - the piece giving check, if only one is
+	 * @param pinCount - number of pinned pieces
+	 * @return - True if the king is safe after the move
+	 */
+	private boolean isLegalMove(int move, King king, int checks, Piece checker, int pinCount){
+		int kingX = king.getXLocation();
+		int kingY = king.getYLocation();
+		int toX = Move.toX(move);
+		int toY = Move.toY(move);
+		
+		if (Move.fromX(move) == kingX && Move.fromY(move) == kingY){
+			int enemyColor = 1 - king.getColor();
+			if (chessBoard.isAttacked(toX, toY, enemyColor))
+				return false;
+			// A piece checking along a line also attacks the spot
+			// behind the king, which the king itself hides
+			return checks == 0 || !isBehindKing(kingX, kingY, toX - kingX, toY - kingY, enemyColor);
+		}
+		if (checks > 1)
+			return false;
+		if (checker != null && !blocksCheck(kingX, kingY, checker, toX, toY))
+			return false;
+		
+		for (int i = 0; i < pinCount; i++){
+			Piece pinned = pinnedPieces[i];
+			if (pinned.getXLocation() == Move.fromX(move) && pinned.getYLocation() == Move.fromY(move))
+				return rayDistance(kingX, kingY, pinXSteps[i], pinYSteps[i], toX, toY) > 0;
+		}
+		return true;
+	}
+	
+	/**
+	 * Finds the enemy piece giving check, for a king
+	 * in check by exactly one piece.
+	 */
+	private Piece findChecker(King king, int enemyColor){
+		PieceList enemies = chessBoard.getPieceList(enemyColor);
+		
+		for (int i = 0; i < enemies.size(); i++){
+			if (enemies.get(i).canMoveTo(king.getXLocation(), king.getYLocation()))
+				return enemies.get(i);
+		}
+		return null;
+	}
+	
+	/**
+	 * Checks whether moving a piece to a spot ends a check, either by
+	 * taking the checking piece or, if it checks along a line, by
+	 * standing in between.
+	 */
+	private boolean blocksCheck(int kingX, int kingY, Piece checker, int toX, int toY){
+		int xDistance = checker.getXLocation() - kingX;
+		int yDistance = checker.getYLocation() - kingY;
+		if (xDistance == toX - kingX && yDistance == toY - kingY)
+			return true;
+		
+		int xStep = Integer.signum(xDistance);
+		int yStep = Integer.signum(yDistance);
+		if (!checker.slidesAlong(-xStep, -yStep))
+			return false;
+		
+		int distance = rayDistance(kingX, kingY, xStep, yStep, toX, toY);
+		return distance > 0 && distance < Math.max(Math.abs(xDistance), Math.abs(yDistance));
+	}
+	
+	/**
+	 * Counts the steps from a spot to another along a direction.
+	 * @return - the number of steps, 0 if the other spot is not on the ray
+	 */
+	private static int rayDistance(int xFrom, int yFrom, int xStep, int yStep, int x, int y){
+		int xDistance = x - xFrom;
+		int yDistance = y - yFrom;
+		
+		if (Integer.signum(xDistance) != xStep || Integer.signum(yDistance) != yStep)
+			return 0;
+		if (xStep != 0 && yStep != 0 && Math.abs(xDistance) != Math.abs(yDistance))
+			return 0;
+		return Math.max(Math.abs(xDistance), Math.abs(yDistance));
+	}
+	
+	/**
+	 * Walks away from the king, opposite to a step it may take,
+	 * and checks whether the first piece met is an enemy sliding
+	 * piece aimed back along the step.
+	 */
+	private boolean isBehindKing(int kingX, int kingY, int xStep, int yStep, int enemyColor){
+		int offset = chessBoard.mailboxOffset(-xStep, -yStep);
+		int index = chessBoard.mailboxIndex(kingX, kingY) + offset;
+		
+		while (!chessBoard.isOffBoard(index) && chessBoard.pieceAtIndex(index) == null){
+			index += offset;
+		}
+		if (chessBoard.isOffBoard(index))
+			return false;
+		
+		Piece piece = chessBoard.pieceAtIndex(index);
+		return piece.getColor() == enemyColor && piece.slidesAlong(xStep, yStep);
+	}
+	
+	/**
+	 * Finds the pieces pinned to a king: allies that stand alone
+	 * between it and an enemy sliding piece aimed at it. Each is
+	 * stored in pinnedPieces with the direction of its pin.
+	 * @return - the number of pinned pieces
+	 */
+	private int findPins(King king){
+		int pinCount = 0;
+		int kingIndex = chessBoard.mailboxIndex(king.getXLocation(), king.getYLocation());
+		
+		for (int i = 0; i < RAY_X.length; i++){
+			int offset = chessBoard.mailboxOffset(RAY_X[i], RAY_Y[i]);
+			Piece ally = null;
+			
+			for (int index = kingIndex + offset; !chessBoard.isOffBoard(index); index += offset){
+				Piece piece = chessBoard.pieceAtIndex(index);
+				if (piece == null)
+					continue;
+				
+				if (ally == null && piece.getColor() == king.getColor()){
+					ally = piece;
+					continue;
 				}
+				if (ally != null && piece.getColor() != king.getColor()
+						&& piece.slidesAlong(-RAY_X[i], -RAY_Y[i])){
+					pinnedPieces[pinCount] = ally;
+					pinXSteps[pinCount] = RAY_X[i];
+					pinYSteps[pinCount] = RAY_Y[i];
+					pinCount++;
+				}
+				break;
 			}
 		}
-		return false;
+		return pinCount;
+	}
+	
+	/**
+	 * Plays a move for good, as in a game being played or replayed,
+	 * however long the game. Once fewer than MAX_MOVES entries of the
+	 * undo stack are left, it is emptied first, so that moves can still
+	 * be tried on the game afterwards; earlier moves can then no longer
+	 * be taken back. The clocks and the positions kept for repetitions
+	 * are not affected.
+	 * 
+	 * ASSERT that a piece stands on the move's starting spot.
+	 * @param move - the packed move
+	 */
+	public void playMove(int move){
+		if (undoCount >= MAX_PLY - MAX_MOVES)
+			clearUndoStack();
+		makeMove(move);
+	}
+	
+	/**
+	 * Plays a move and hands the turn to the other player,
+	 * remembering enough to take the move back with unmakeMove.
+	 * 
+	 * ASSERT that a piece stands on the move's starting spot,
+	 * and that fewer than MAX_PLY moves are waiting to be taken back.
+	 * @param move - the packed move
+	 */
+	public void makeMove(int move){
+		int x = Move.toX(move);
+		int y = Move.toY(move);
+		Piece currentPiece = chessBoard.pieceAt(Move.fromX(move), Move.fromY(move));
+		
+		undoMoves[undoCount] = move;
+		undoCaptured[undoCount] = chessBoard.pieceAt(x, y);
+		undoHasMoved[undoCount] = currentPiece.hasMoved();
+		undoHalfmoveClock[undoCount] = halfmoveClock;
+		keyHistory[keyCount & (KEY_HISTORY - 1)] = getPositionKey();
+		keyCount++;
+		
+		if (undoCaptured[undoCount] != null || currentPiece.getPieceType() == Piece.PAWN)
+			halfmoveClock = 0;
+		else
+			halfmoveClock++;
+		if (currentPlayer == BLACK)
+			fullmoveNumber++;
+		undoCount++;
+		
+		currentPiece.moveTo(x, y);
+		switchPlayerTurn();
+	}
+	
+	/**
+	 * Takes back the last move played with makeMove, putting
+	 * back any captured piece and the mover's hasMoved state.
+	 * 
+	 * ASSERT that a move is waiting to be taken back.
+	 */
+	public void unmakeMove(){
+		undoCount--;
+		int move = undoMoves[undoCount];
+		int x = Move.toX(move);
+		int y = Move.toY(move);
+		Piece currentPiece = chessBoard.pieceAt(x, y);
+		Piece captured = undoCaptured[undoCount];
+		
+		currentPiece.placeAt(Move.fromX(move), Move.fromY(move));
+		currentPiece.setHasMoved(undoHasMoved[undoCount]);
+		if (captured != null)
+			captured.placeAt(x, y);
+		
+		undoCaptured[undoCount] = null;
+		halfmoveClock = undoHalfmoveClock[undoCount];
+		keyCount--;
+		switchPlayerTurn();
+		if (currentPlayer == BLACK)
+			fullmoveNumber--;
 	}
 	
 	/**
@@ -183,45 +772,28 @@ public class Game {
 	 * @return - True if the specified king is in check.
 	 */
 	public boolean isKingInCheck(int color){
-		boolean result = false;
-		
-		LinkedList<Piece> originalList;
 		King kingInQuestion;
+		int enemyColor;
 		
 		if (color == BLACK){
-			originalList = whitePieces;
 			kingInQuestion = blackKing;
+			enemyColor = WHITE;
 		} else {
-			originalList = blackPieces;
 			kingInQuestion = whiteKing;
+			enemyColor = BLACK;
 		}
 		
-		int xKingLoc = kingInQuestion.getXLocation();
-		int yKingLoc = kingInQuestion.getYLocation();
-		
-		for (Piece currentPiece : originalList){
-			if (currentPiece.canMoveTo(xKingLoc, yKingLoc)){
-				result = true;
-			}
-		}
-		
-		return result;
+		return chessBoard.isAttacked(kingInQuestion.getXLocation(),
+				kingInQuestion.getYLocation(), enemyColor);
 	}
 	
 	/**
-	 * Removes this piece from the game
-	 * 
-	 * ASSERT that the removed piece is already in game.
+	 * Removes this piece from the game. Pieces in the game are the
+	 * ones on the board, so this takes it out of its piece list too.
 	 * @param removeThisPiece the piece to remove.
 	 */
 	public void removePiece(Piece removeThisPiece){
 		removeThisPiece.removePiece();
-		int color = removeThisPiece.getColor();
-		
-		if (color == BLACK)
-			blackPieces.remove(removeThisPiece);
-		else
-			whitePieces.remove(removeThisPiece);
 	}
 	
 	public void switchPlayerTurn(){
@@ -231,51 +803,143 @@ public class Game {
 	}
 	
 	public Queen addQueen(int color, int xloc, int yloc){
-		Queen queen = new Queen(chessBoard, color, xloc, yloc);
-		pieceToColorHelper(queen, color);
-		
-		return queen;
+		return new Queen(chessBoard, color, xloc, yloc);
 	}
 	
 	public Knight addKnight(int color, int xloc, int yloc){
-		Knight knight = new Knight(chessBoard, color, xloc, yloc);
-		pieceToColorHelper(knight, color);
-		
-		return knight;
+		return new Knight(chessBoard, color, xloc, yloc);
 	}
 	
 	public Rook addRook(int color, int xloc, int yloc){
-		Rook rook = new Rook(chessBoard, color, xloc, yloc);
-		pieceToColorHelper(rook, color);
-		
-		return rook;
+		return new Rook(chessBoard, color, xloc, yloc);
 	}
 	
 	public Bishop addBishop(int color, int xloc, int yloc){
-		Bishop bishop = new Bishop(chessBoard, color, xloc, yloc);
-		pieceToColorHelper(bishop, color);
-		
-		return bishop;
+		return new Bishop(chessBoard, color, xloc, yloc);
 	}
 	
 	public Pawn addPawn(int color, int xloc, int yloc){
-		Pawn pawn = new Pawn(chessBoard, color, xloc, yloc);
-		pieceToColorHelper(pawn, color);
+		return new Pawn(chessBoard, color, xloc, yloc);
+	}
+	
+	/**
+	 * Adds a piece of any type. Kings are not added, but the
+	 * player's king is moved to the location instead.
+	 * 
+	 * ASSERT that the king is off the board when placing a king.
+	 * @param type - one of the piece type constants in Piece
+	 * @param color - color of the piece
+	 * @param xloc - x location of the piece
+	 * @param yloc - y location of the piece
+	 * @return - the piece now at the location
+	 */
+	public Piece addPiece(int type, int color, int xloc, int yloc){
+		switch (type){
+		case Piece.PAWN:
+			return addPawn(color, xloc, yloc);
+		case Piece.KNIGHT:
+			return addKnight(color, xloc, yloc);
+		case Piece.BISHOP:
+			return addBishop(color, xloc, yloc);
+		case Piece.ROOK:
+			return addRook(color, xloc, yloc);
+		case Piece.QUEEN:
+			return addQueen(color, xloc, yloc);
+		case Piece.KING:
+			King king = (color == BLACK) ? blackKing : whiteKing;
+			if (king.onBoard())
+				throw new IllegalArgumentException("More than one king of a color");
+			king.placeAt(xloc, yloc);
+			return king;
+		default:
+			return new Piece(chessBoard, color, xloc, yloc);
+		}
+	}
+	
+	/**
+	 * Makes an independent game with the same position and player
+	 * to move, for example to search on another thread. Moves played
+	 * before the copy cannot be taken back in the copy, but still
+	 * count towards repetitions and the fifty-move rule.
+	 * @return - the new game
+	 */
+	public Game copy(){
+		Game copy = new Game();
+		copy.setPosition(getPosition());
+		copy.halfmoveClock = halfmoveClock;
+		copy.fullmoveNumber = fullmoveNumber;
+		System.arraycopy(keyHistory, 0, copy.keyHistory, 0, KEY_HISTORY);
+		copy.keyCount = keyCount;
+		return copy;
+	}
+	
+	/**
+	 * Takes an immutable snapshot of the current position,
+	 * which other threads may read without locking.
+	 * @return - the pieces, their moved flags and the player to move
+	 */
+	public Position getPosition(){
+		return Position.of(chessBoard, currentPlayer);
+	}
+	
+	/**
+	 * Replaces the pieces on the board and the player to move with
+	 * those of a snapshot, and forgets any moves waiting to be
+	 * taken back. The move counters and the positions remembered for
+	 * repetitions are kept, so a game may be set to its own snapshot
+	 * to free the undo stack during a long run of moves.
+	 * @param position - a snapshot of a board the size of this one
+	 */
+	public void setPosition(Position position){
+		if (position.getXDimension() != chessBoard.getXDimension()
+				|| position.getYDimension() != chessBoard.getYDimension())
+			throw new IllegalArgumentException("Snapshot is of a different board size");
 		
-		return pawn;
+		clearBoard();
+		for (int x = 0; x < position.getXDimension(); x++){
+			for (int y = 0; y < position.getYDimension(); y++){
+				int type = position.getPieceType(x, y);
+				if (type < 0)
+					continue;
+				
+				Piece added = addPiece(type, position.getColor(x, y), x, y);
+				added.setHasMoved(position.hasMoved(x, y));
+			}
+		}
+		currentPlayer = position.getPlayerTurn();
 	}
 	
-	private void pieceToColorHelper(Piece piece, int color){
-		if (color == BLACK)
-			blackPieces.add(piece);
-		else
-			whitePieces.add(piece);
+	/**
+	 * Returns a 64 bit key that identifies the current position,
+	 * including which player is to move. Equal positions always get
+	 * equal keys; different positions collide only by rare chance.
+	 * @return - the Zobrist key of the position
+	 */
+	public long getPositionKey(){
+		if (currentPlayer == BLACK)
+			return chessBoard.getPositionKey() ^ Zobrist.SIDE_TO_MOVE;
+		return chessBoard.getPositionKey();
 	}
 	
 	public int getPlayerTurn(){
 		return currentPlayer;
 	}
 	
+	/**
+	 * Number of moves since the last capture or pawn move.
+	 */
+	public int getHalfmoveClock(){
+		return halfmoveClock;
+	}
+	
+	/**
+	 * Number of the current full move, starting at 1 and
+	 * going up after each move by black.
+	 */
+	public int getFullmoveNumber(){
+		return fullmoveNumber;
+	}
+	
 	public void setPlayer(int player){
 		currentPlayer = player;
 	}
@@ -287,4 +951,8 @@ public class Game {
 	public King getWhiteKing(){
 		return whiteKing;
 	}
+	
+	public Board getBoard(){
+		return chessBoard;
+	}
 }
@@ -0,0 +1,150 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads games from a file written by GameRecordWriter, in any order.
+ *
+ * The file is memory-mapped in windows of up to a gigabyte, which
+ * overlap by the largest record size so that every record lies whole in
+ * the window of its offset. Windows are mapped the first time they are
+ * needed. Moves are decoded by generating the sorted legal moves of
+ * each position and are played on a Game as they are read. A reader
+ * keeps scratch buffers, so each thread should use its own.
+ */
+public class GameRecordReader implements Closeable {
+	private static final long WINDOW_BYTES = 1L << 30;
+	
+	private FileChannel channel;
+	private long fileSize;
+	private long indexOffset;
+	private int gameCount;
+	private MappedByteBuffer[] windows;
+	private int[] legalMoves;
+	private byte[] fenBytes;
+	
+	public GameRecordReader(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		fileSize = channel.size();
+		if (fileSize < GameRecordWriter.FOOTER_BYTES)
+			throw new IOException("Not a game record file: " + path);
+		
+		ByteBuffer footer = ByteBuffer.allocate(GameRecordWriter.FOOTER_BYTES);
+		while (footer.hasRemaining()
+				&& channel.read(footer, fileSize - GameRecordWriter.FOOTER_BYTES + footer.position()) > 0){
+		}
+		footer.flip();
+		indexOffset = footer.getLong();
+		gameCount = footer.getInt();
+		if (footer.getInt() != GameRecordWriter.MAGIC
+				|| indexOffset + 8L * gameCount + GameRecordWriter.FOOTER_BYTES != fileSize)
+			throw new IOException("Not a game record file: " + path);
+		
+		windows = new MappedByteBuffer[(int) (fileSize / WINDOW_BYTES) + 1];
+		legalMoves = new int[Game.MAX_MOVES];
+		fenBytes = new byte[128];
+	}
+	
+	public int getGameCount(){
+		return gameCount;
+	}
+	
+	/**
+	 * Number of moves in a game, read without replaying it.
+	 */
+	public int getMoveCount(int gameIndex) throws IOException {
+		ByteBuffer record = recordAt(gameIndex);
+		if ((record.get() & GameRecordWriter.FLAG_FEN) != 0)
+			record.position(record.position() + getVarint(record));
+		return getVarint(record);
+	}
+	
+	/**
+	 * Result of a game: "1-0", "0-1", "1/2-1/2" or "*".
+	 */
+	public String getResult(int gameIndex) throws IOException {
+		int flags = recordAt(gameIndex).get();
+		return GameRecordWriter.RESULTS[(flags >>> GameRecordWriter.RESULT_SHIFT) & 0x3];
+	}
+	
+	/**
+	 * Sets a game up at the start position of a record and plays
+	 * its moves, filling a buffer with them.
+	 * @param gameIndex - which game, from 0
+	 * @param game - the game to play the moves on
+	 * @param moves - buffer for the moves, at least getMoveCount long
+	 * @return - the number of moves played
+	 * @throws IOException if the file cannot be read or is damaged
+	 */
+	public int readGame(int gameIndex, Game game, int[] moves) throws IOException {
+		ByteBuffer record = recordAt(gameIndex);
+		int flags = record.get();
+		
+		if ((flags & GameRecordWriter.FLAG_FEN) != 0){
+			int length = getVarint(record);
+			if (length > fenBytes.length)
+				fenBytes = new byte[length];
+			record.get(fenBytes, 0, length);
+			game.setupFen(fenBytes, 0, length);
+		}
+		else
+			game.standardSetup();
+		
+		int moveCount = getVarint(record);
+		if (moveCount > moves.length)
+			throw new IllegalArgumentException("Move buffer too small for " + moveCount + " moves");
+		
+		for (int i = 0; i < moveCount; i++){
+			int legalCount = GameRecordWriter.sortedLegalMoves(game, legalMoves);
+			int index = record.get() & 0xFF;
+			if (index >= legalCount)
+				throw new IOException("Damaged record for game " + gameIndex + " at ply " + i);
+			
+			moves[i] = legalMoves[index];
+			game.playMove(moves[i]);
+		}
+		return moveCount;
+	}
+	
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	/**
+	 * Returns a view of a game's record, positioned at its start.
+	 */
+	private ByteBuffer recordAt(int gameIndex) throws IOException {
+		if (gameIndex < 0 || gameIndex >= gameCount)
+			throw new IndexOutOfBoundsException("Game " + gameIndex + " of " + gameCount);
+		
+		long offset = window((indexOffset + 8L * gameIndex) / WINDOW_BYTES)
+				.getLong((int) ((indexOffset + 8L * gameIndex) % WINDOW_BYTES));
+		ByteBuffer record = window(offset / WINDOW_BYTES).duplicate();
+		record.position((int) (offset % WINDOW_BYTES));
+		return record;
+	}
+	
+	private MappedByteBuffer window(long number) throws IOException {
+		int i = (int) number;
+		if (windows[i] == null){
+			long start = number * WINDOW_BYTES;
+			long length = Math.min(WINDOW_BYTES + GameRecordWriter.MAX_RECORD_BYTES, fileSize - start);
+			windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+		}
+		return windows[i];
+	}
+	
+	private static int getVarint(ByteBuffer buffer){
+		int value = 0;
+		for (int shift = 0; ; shift += 7){
+			int b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+	}
+}
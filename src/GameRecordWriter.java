@@ -0,0 +1,198 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes games to a compact binary file, read back by GameRecordReader.
+ *
+ * Each move is stored as its index in the sorted list of legal moves of
+ * the position it is played in, a single byte, as no position has more
+ * than Game.MAX_MOVES (256) moves. A game record is a flags byte (start
+ * position given or not, result), the start position as a FEN record if
+ * it is not the standard one, the move count as a varint, then the move
+ * indexes. After the records comes an index of their offsets, and the
+ * file ends with the index offset, the game count and a magic number:
+ *
+ *   record*  offset[count] (8 bytes each)  indexOffset (8)  count (4)  magic (4)
+ */
+public class GameRecordWriter implements Closeable {
+	public static final int MAGIC = 0x43475231;
+	public static final int FOOTER_BYTES = 8 + 4 + 4;
+	// Records larger than this are refused, so that readers can map
+	// the file in overlapping windows and find every record whole
+	public static final int MAX_RECORD_BYTES = 1 << 20;
+	
+	static final int FLAG_FEN = 1;
+	static final int RESULT_SHIFT = 1;
+	// Result codes, by index
+	static final String[] RESULTS = {"*", "1-0", "0-1", "1/2-1/2"};
+	
+	private static final int BUFFER_BYTES = 64 * 1024;
+	
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private ByteBuffer record;
+	private long position;
+	private long[] offsets;
+	private int gameCount;
+	
+	private Game game;
+	private int[] legalMoves;
+	
+	public GameRecordWriter(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		buffer = ByteBuffer.allocate(BUFFER_BYTES);
+		record = ByteBuffer.allocate(1024);
+		offsets = new long[1024];
+		
+		game = new Game();
+		legalMoves = new int[Game.MAX_MOVES];
+	}
+	
+	/**
+	 * Writes a game read from PGN, up to its first illegal move.
+	 */
+	public void write(PgnGame pgn) throws IOException {
+		int[] moves = new int[pgn.getMoveCount()];
+		for (int i = 0; i < moves.length; i++){
+			moves[i] = pgn.getMove(i);
+		}
+		write(pgn.getTag("FEN"), moves, moves.length, pgn.getResult());
+	}
+	
+	/**
+	 * Writes a game.
+	 * @param fen - FEN record of the start position, or null for the standard one
+	 * @param moves - the moves played, packed with Move.encode
+	 * @param moveCount - number of moves
+	 * @param result - "1-0", "0-1", "1/2-1/2" or "*"
+	 * @throws IOException if the file cannot be written
+	 * @throws IllegalArgumentException if a move is not legal
+	 */
+	public void write(String fen, int[] moves, int moveCount, String result) throws IOException {
+		int resultCode = java.util.Arrays.asList(RESULTS).indexOf(result);
+		if (resultCode < 0)
+			resultCode = 0;
+		
+		record.clear();
+		if (fen == null){
+			game.standardSetup();
+			putRecordByte(resultCode << RESULT_SHIFT);
+		}
+		else {
+			game.setupFen(fen);
+			byte[] text = fen.getBytes("US-ASCII");
+			putRecordByte(FLAG_FEN | (resultCode << RESULT_SHIFT));
+			putRecordVarint(text.length);
+			for (byte b : text){
+				putRecordByte(b);
+			}
+		}
+		putRecordVarint(moveCount);
+		
+		for (int i = 0; i < moveCount; i++){
+			int legalCount = sortedLegalMoves(game, legalMoves);
+			int index = java.util.Arrays.binarySearch(legalMoves, 0, legalCount, moves[i]);
+			if (index < 0)
+				throw new IllegalArgumentException("Illegal move " + Move.toString(moves[i])
+						+ " at ply " + i + " of game " + gameCount);
+			
+			putRecordByte(index);
+			
+			game.playMove(moves[i]);
+		}
+		
+		record.flip();
+		if (gameCount == offsets.length)
+			offsets = java.util.Arrays.copyOf(offsets, 2 * gameCount);
+		offsets[gameCount++] = position;
+		writeBytes(record);
+	}
+	
+	/**
+	 * Writes the offset index and footer, and closes the file.
+	 */
+	public void close() throws IOException {
+		try {
+			long indexOffset = position;
+			for (int i = 0; i < gameCount; i++){
+				writeLong(offsets[i]);
+			}
+			writeLong(indexOffset);
+			ByteBuffer footer = ByteBuffer.allocate(8);
+			footer.putInt(gameCount).putInt(MAGIC).flip();
+			writeBytes(footer);
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+	
+	public int getGameCount(){
+		return gameCount;
+	}
+	
+	/**
+	 * Fills a buffer with the legal moves of the player to move,
+	 * sorted, which is the order move indexes refer to.
+	 * @return - the number of legal moves
+	 */
+	static int sortedLegalMoves(Game game, int[] moves){
+		int count = game.generateLegalMoves(game.getPlayerTurn(), moves);
+		java.util.Arrays.sort(moves, 0, count);
+		return count;
+	}
+	
+	private void putRecordByte(int value){
+		if (!record.hasRemaining()){
+			if (record.capacity() >= MAX_RECORD_BYTES)
+				throw new IllegalArgumentException("Game record longer than "
+						+ MAX_RECORD_BYTES + " bytes");
+			ByteBuffer larger = ByteBuffer.allocate(2 * record.capacity());
+			record.flip();
+			larger.put(record);
+			record = larger;
+		}
+		record.put((byte) value);
+	}
+	
+	private void putRecordVarint(int value){
+		while ((value & ~0x7F) != 0){
+			putRecordByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		putRecordByte(value);
+	}
+	
+	private void writeLong(long value) throws IOException {
+		if (buffer.remaining() < 8)
+			flush();
+		buffer.putLong(value);
+		position += 8;
+	}
+	
+	private void writeBytes(ByteBuffer bytes) throws IOException {
+		position += bytes.remaining();
+		while (bytes.hasRemaining()){
+			if (!buffer.hasRemaining())
+				flush();
+			int count = Math.min(buffer.remaining(), bytes.remaining());
+			ByteBuffer slice = bytes.duplicate();
+			slice.limit(slice.position() + count);
+			buffer.put(slice);
+			bytes.position(bytes.position() + count);
+		}
+	}
+	
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
@@ -1,9 +1,24 @@
 
 public class King extends Piece{
+	private static final int[] STEP_X = {1, 1, 1, 0, 0, -1, -1, -1};
+	private static final int[] STEP_Y = {1, 0, -1, 1, -1, 1, 0, -1};
+	
 	public King(Board board, int color, int xLoc, int yLoc){
 		super(board, color, xLoc, yLoc);
 	}
 	
+	public int getPieceType(){
+		return KING;
+	}
+	
+	public int generateMoves(int[] moves, int count){
+		return generateOffsetMoves(STEP_X, STEP_Y, moves, count);
+	}
+	
+	public void markAttacks(int xPosition, int yPosition, int delta){
+		markOffsetAttacks(xPosition, yPosition, STEP_X, STEP_Y, delta);
+	}
+	
 	public boolean canMoveTo(int xPosition, int yPosition){
 		if(canMoveGenerics(xPosition,yPosition)){
 			return kingMovement(xPosition, yPosition);
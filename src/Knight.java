@@ -1,9 +1,24 @@
 
 public class Knight extends Piece{
+	private static final int[] JUMP_X = {2, 2, -2, -2, 1, 1, -1, -1};
+	private static final int[] JUMP_Y = {1, -1, 1, -1, 2, -2, 2, -2};
+	
 	public Knight(Board board, int color, int xLoc, int yLoc){
 		super(board, color, xLoc, yLoc);
 	}
 	
+	public int getPieceType(){
+		return KNIGHT;
+	}
+	
+	public int generateMoves(int[] moves, int count){
+		return generateOffsetMoves(JUMP_X, JUMP_Y, moves, count);
+	}
+	
+	public void markAttacks(int xPosition, int yPosition, int delta){
+		markOffsetAttacks(xPosition, yPosition, JUMP_X, JUMP_Y, delta);
+	}
+	
 	public boolean canMoveTo(int xPosition, int yPosition){
 		if(canMoveGenerics(xPosition,yPosition)){
 			return knightMovement(xPosition, yPosition);
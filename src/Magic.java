@@ -0,0 +1,233 @@
+/**
+ * Sliding attacks on the standard 8x8 board from magic bitboard tables.
+ *
+ * For each square, the pieces that can block a rook (or bishop) on it
+ * are picked out of the occupancy with a mask, and multiplying them by
+ * the square's magic number gathers them into the top bits, which index
+ * a table of the attacked squares. So an attack set is one mask,
+ * multiply, shift and load, whatever stands on the board. Squares are
+ * numbered x * 8 + y, as in BitBoard. The magic numbers below were found
+ * by trying sparse random numbers from a fixed seed; each is checked as
+ * its table is filled when the class loads, and searched for again
+ * should it not fit.
+ */
+public class Magic {
+	private static final int SQUARES = 64;
+	private static final long SEED = 0x6A09E667F3BCC908L;
+	private static final int[] ROOK_X = {1, -1, 0, 0};
+	private static final int[] ROOK_Y = {0, 0, 1, -1};
+	private static final int[] BISHOP_X = {1, 1, -1, -1};
+	private static final int[] BISHOP_Y = {1, -1, 1, -1};
+	
+	private static final long[] ROOK_MASKS = new long[SQUARES];
+	private static final long[] ROOK_MAGICS = {
+		0x0080081080204000L, 0x8080200040008011L, 0x0C800C8010002000L, 0x4100100004082100L,
+		0x0100100208000500L, 0x0200040188020010L, 0x4480210000800200L, 0x0100052200804900L,
+		0x8002800080400020L, 0x1000400020100040L, 0x8104801002802008L, 0x00A2004010200A01L,
+		0x0200800800040080L, 0x1422000411080200L, 0x8004001001084204L, 0x0102002401049042L,
+		0x0020248000400080L, 0x011008400040200CL, 0x0180820020401202L, 0x0100090010030020L,
+		0x0600828008002400L, 0x2003010008040002L, 0x2D00040008018210L, 0x2A00820000804421L,
+		0x4020410100208000L, 0x01C0004080200090L, 0x200C410100102002L, 0x0420080080100084L,
+		0x0020100500080100L, 0x0218040080800200L, 0x4500424400100881L, 0x46092542000B8401L,
+		0x13C0008045800820L, 0x0060004000802080L, 0x008100104100200AL, 0x0810001081802800L,
+		0x1C08000400800880L, 0x0422000402000810L, 0x2022008162000408L, 0x8800008402000041L,
+		0x8858C000A1818000L, 0x0040100428022000L, 0x0010008020008010L, 0x668101D000090020L,
+		0x8A04040008008080L, 0x2020040002008080L, 0x020E014210040048L, 0x0000008041020004L,
+		0x0440400020800080L, 0x0501401020008A80L, 0x1000A00010018180L, 0x0406021008204200L,
+		0x0800800400080080L, 0x0001201084400801L, 0x0011800200010080L, 0x04452102841D4200L,
+		0x0002081100402082L, 0x9000824001022013L, 0x022001002010400DL, 0x2120100020080501L,
+		0x841200182010042AL, 0x0002000810040102L, 0x0010208148021004L, 0x0409022651018402L
+	};
+	private static final int[] ROOK_SHIFTS = new int[SQUARES];
+	private static final int[] ROOK_OFFSETS = new int[SQUARES];
+	private static final long[] ROOK_ATTACKS;
+	
+	private static final long[] BISHOP_MASKS = new long[SQUARES];
+	private static final long[] BISHOP_MAGICS = {
+		0x0510201A34004810L, 0x2404010204011208L, 0x2090014200222230L, 0x9211040081082000L,
+		0x0082021008C0AA80L, 0x06C201C420400800L, 0x000C0C0442091002L, 0x1000808050100480L,
+		0x5980600E64384080L, 0x0040208232020228L, 0xC040104080850032L, 0x0000A8284100AE10L,
+		0x2000040420210200L, 0x2820090420252080L, 0x0050210D0520A120L, 0x0020004A00900802L,
+		0x0022044544140800L, 0x060432BA04086601L, 0x4020442418008010L, 0x0402021040124002L,
+		0x2932000420210002L, 0x0081020210020120L, 0x0480401084046080L, 0x0201024605014124L,
+		0x2082083010210810L, 0x8004844002280808L, 0x0454500021040280L, 0x8040040000410021L,
+		0x880100122500400AL, 0x000B47000E010100L, 0x400403800300B081L, 0x0041004003005800L,
+		0x0262200400101000L, 0x0014042084224A58L, 0x504C020110080040L, 0x0402008020020201L,
+		0x0010020081041004L, 0x0024100411208040L, 0x0030014442020204L, 0x2008428100802500L,
+		0xA0020842C0000800L, 0x3810421004101011L, 0x4800084410000208L, 0x010084E018008100L,
+		0x8382011020800400L, 0x2042600801080080L, 0x0050015200980400L, 0x0190840040840041L,
+		0x9004108808080049L, 0x8081088801080403L, 0x2002004044100814L, 0x0080000284043000L,
+		0x049C0C8590440812L, 0x0090200222A20400L, 0x0104100288011183L, 0x0020040092004280L,
+		0x0A00220210410800L, 0x2008004104012007L, 0x0500000211008800L, 0x00004190829C0400L,
+		0x0800380010C20204L, 0x042012944810B300L, 0x5000481001680100L, 0x04400A44C4088080L
+	};
+	private static final int[] BISHOP_SHIFTS = new int[SQUARES];
+	private static final int[] BISHOP_OFFSETS = new int[SQUARES];
+	private static final long[] BISHOP_ATTACKS;
+	
+	private static long state = SEED;
+	
+	static {
+		ROOK_ATTACKS = buildTables(ROOK_X, ROOK_Y, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS);
+		BISHOP_ATTACKS = buildTables(BISHOP_X, BISHOP_Y,
+				BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS);
+	}
+	
+	private Magic(){
+	}
+	
+	/**
+	 * Squares a rook attacks, up to and including the first
+	 * piece in each direction.
+	 * @param square square of the rook
+	 * @param occupied every occupied square
+	 * @return the attacked squares
+	 */
+	public static long rookAttacks(int square, long occupied){
+		return ROOK_ATTACKS[ROOK_OFFSETS[square]
+				+ (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+	}
+	
+	/**
+	 * Squares a bishop attacks, up to and including the first
+	 * piece in each direction.
+	 * @param square square of the bishop
+	 * @param occupied every occupied square
+	 * @return the attacked squares
+	 */
+	public static long bishopAttacks(int square, long occupied){
+		return BISHOP_ATTACKS[BISHOP_OFFSETS[square]
+				+ (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+	}
+	
+	public static long queenAttacks(int square, long occupied){
+		return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+	}
+	
+	/**
+	 * Fills in the masks, magics, shifts and offsets of one kind of
+	 * slider and returns its attack tables, one after another.
+	 */
+	private static long[] buildTables(int[] xSteps, int[] ySteps,
+			long[] masks, long[] magics, int[] shifts, int[] offsets){
+		int total = 0;
+		for (int square = 0; square < SQUARES; square++){
+			masks[square] = blockerMask(square, xSteps, ySteps);
+			shifts[square] = SQUARES - Long.bitCount(masks[square]);
+			offsets[square] = total;
+			total += 1 << Long.bitCount(masks[square]);
+		}
+		
+		long[] attacks = new long[total];
+		for (int square = 0; square < SQUARES; square++){
+			findMagic(square, xSteps, ySteps, masks, magics, shifts[square], attacks, offsets[square]);
+		}
+		return attacks;
+	}
+	
+	/**
+	 * Fills the table of a square from its magic number, finding
+	 * another first if that one does not fit.
+	 */
+	private static void findMagic(int square, int[] xSteps, int[] ySteps, long[] masks, long[] magics,
+			int shift, long[] attacks, int offset){
+		long mask = masks[square];
+		int count = 1 << Long.bitCount(mask);
+		long[] blockers = new long[count];
+		long[] expected = new long[count];
+		
+		// Every subset of the mask, by the carry-rippler trick
+		long subset = 0;
+		for (int i = 0; i < count; i++){
+			blockers[i] = subset;
+			expected[i] = slowAttacks(square, subset, xSteps, ySteps);
+			subset = (subset - mask) & mask;
+		}
+		
+		int[] used = new int[count];
+		if (fits(magics[square], blockers, expected, used, 1, shift, attacks, offset))
+			return;
+		for (int attempt = 2; ; attempt++){
+			long magic = nextRandom() & nextRandom() & nextRandom();
+			if (Long.bitCount((mask * magic) >>> 56) >= 6
+					&& fits(magic, blockers, expected, used, attempt, shift, attacks, offset)){
+				magics[square] = magic;
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Fills a table with a magic number, unless two blocker sets with
+	 * different attacks land on the same entry. Entries not stamped
+	 * with the attempt number are free.
+	 */
+	private static boolean fits(long magic, long[] blockers, long[] expected, int[] used, int attempt,
+			int shift, long[] attacks, int offset){
+		for (int i = 0; i < blockers.length; i++){
+			int index = (int) ((blockers[i] * magic) >>> shift);
+			if (used[index] != attempt){
+				used[index] = attempt;
+				attacks[offset + index] = expected[i];
+			}
+			else if (attacks[offset + index] != expected[i])
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Squares whose pieces can block a slider on a square: those
+	 * along its rays, leaving out the last square of each, as
+	 * nothing lies behind it.
+	 */
+	private static long blockerMask(int square, int[] xSteps, int[] ySteps){
+		long mask = 0;
+		for (int i = 0; i < xSteps.length; i++){
+			int x = square / 8 + xSteps[i];
+			int y = square % 8 + ySteps[i];
+			while (isOnBoard(x + xSteps[i], y + ySteps[i])){
+				mask |= 1L << (x * 8 + y);
+				x += xSteps[i];
+				y += ySteps[i];
+			}
+		}
+		return mask;
+	}
+	
+	/**
+	 * Attacks found by walking each ray, used to fill the tables.
+	 */
+	private static long slowAttacks(int square, long occupied, int[] xSteps, int[] ySteps){
+		long attacks = 0;
+		for (int i = 0; i < xSteps.length; i++){
+			int x = square / 8 + xSteps[i];
+			int y = square % 8 + ySteps[i];
+			while (isOnBoard(x, y)){
+				long bit = 1L << (x * 8 + y);
+				attacks |= bit;
+				if ((occupied & bit) != 0)
+					break;
+				x += xSteps[i];
+				y += ySteps[i];
+			}
+		}
+		return attacks;
+	}
+	
+	private static boolean isOnBoard(int x, int y){
+		return x >= 0 && x < 8 && y >= 0 && y < 8;
+	}
+	
+	/**
+	 * Next number of a fixed sequence (SplitMix64), so that the same
+	 * magic numbers are found on every run.
+	 */
+	private static long nextRandom(){
+		state += 0x9E3779B97F4A7C15L;
+		long z = state;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
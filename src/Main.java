@@ -1,7 +1,86 @@
 
 public class Main {
 	public static void main(String[] args){
-		Game game = new Game();
-		game.gameLoop();
+		if (args.length > 0 && args[0].equals("perft")){
+			runPerft(args);
+			return;
+		}
+		if (args.length > 1 && args[0].equals("validate")){
+			runValidate(args);
+			return;
+		}
+		if (args.length > 2 && args[0].equals("tablebase")){
+			runTablebase(args);
+			return;
+		}
+		if (args.length > 0 && args[0].equals("play")){
+			new Game().gameLoop();
+			return;
+		}
+		
+		try {
+			new Uci(System.in, System.out).run();
+		} catch (java.io.IOException e) {
+			System.err.println("Cannot read commands: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * perft [depth] runs the reference suite,
+	 * perft depth fen... divides the position of a FEN record,
+	 * given whole or as its separate fields.
+	 */
+	private static void runPerft(String[] args){
+		int depth = 4;
+		if (args.length > 1)
+			depth = Integer.parseInt(args[1]);
+		
+		if (args.length > 2){
+			StringBuilder fen = new StringBuilder(args[2]);
+			for (int i = 3; i < args.length; i++){
+				fen.append(' ').append(args[i]);
+			}
+			
+			Game game = new Game();
+			game.setupFen(fen);
+			new Perft(game).divide(depth, System.out);
+		}
+		else
+			Perft.runSuite(depth, System.out);
+	}
+	
+	/**
+	 * validate file [threads] replays every game of a PGN file
+	 * and prints what was found.
+	 */
+	private static void runValidate(String[] args){
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (args.length > 2)
+			threads = Integer.parseInt(args[2]);
+		
+		try {
+			new BatchValidator(threads).validate(java.nio.file.Paths.get(args[1])).print(System.out);
+		} catch (java.io.IOException e) {
+			System.err.println("Cannot read " + args[1] + ": " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * tablebase file material... generates the tables of the given
+	 * sets of pieces, such as KQvK or KRvKN, and writes them to a file.
+	 */
+	private static void runTablebase(String[] args){
+		TablebaseGenerator generator = new TablebaseGenerator();
+		for (int i = 2; i < args.length; i++){
+			long start = System.currentTimeMillis();
+			generator.generate(args[i]);
+			System.out.println(args[i] + ": " + (System.currentTimeMillis() - start) + " ms");
+		}
+		
+		try {
+			System.out.println(generator.write(java.nio.file.Paths.get(args[1])) + " tables written");
+		} catch (java.io.IOException e) {
+			System.err.println("Cannot write " + args[1] + ": " + e.getMessage());
+		}
 	}
 }
@@ -0,0 +1,45 @@
+
+/**
+ * Packs a move into a single int so that move lists can be
+ * kept in primitive buffers.
+ *
+ * Each coordinate takes one byte: from x, from y, to x, to y
+ * (most significant byte first).
+ */
+public class Move {
+	// A piece never moves onto its own spot, so 0 is never a real move.
+	public static final int NONE = 0;
+	
+	private Move(){
+	}
+	
+	public static int encode(int fromX, int fromY, int toX, int toY){
+		return (fromX << 24) | (fromY << 16) | (toX << 8) | toY;
+	}
+	
+	public static int fromX(int move){
+		return move >>> 24;
+	}
+	
+	public static int fromY(int move){
+		return (move >>> 16) & 0xFF;
+	}
+	
+	public static int toX(int move){
+		return (move >>> 8) & 0xFF;
+	}
+	
+	public static int toY(int move){
+		return move & 0xFF;
+	}
+	
+	/**
+	 * Readable form of a move, for printing
+	 * @param move the packed move
+	 * @return the move as "(fromX, fromY) -> (toX, toY)"
+	 */
+	public static String toString(int move){
+		return "(" + fromX(move) + ", " + fromY(move) + ") -> ("
+				+ toX(move) + ", " + toY(move) + ")";
+	}
+}
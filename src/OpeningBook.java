@@ -0,0 +1,148 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * An opening book read straight from a memory-mapped file.
+ *
+ * The file is a run of 16 byte records, sorted by position key: the key
+ * from Game.getPositionKey (8 bytes), the move packed with Move.encode
+ * (4 bytes) and its weight (4 bytes). Lookups binary search the mapped
+ * records, so opening a book costs nothing however large it is, and
+ * nothing is copied onto the heap. OpeningBookBuilder writes books.
+ */
+public class OpeningBook implements Closeable {
+	public static final int RECORD_BYTES = 16;
+	// Windows hold whole records, so no record is split between two
+	private static final long WINDOW_BYTES = 1L << 30;
+	
+	private FileChannel channel;
+	private MappedByteBuffer[] windows;
+	private long recordCount;
+	
+	// Buffers for pickMove, which is why it is not for several threads at once
+	private int[] bookMoves;
+	private int[] bookWeights;
+	private int[] legalMoves;
+	
+	public OpeningBook(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		long size = channel.size();
+		if (size % RECORD_BYTES != 0)
+			throw new IOException("Not an opening book: " + path);
+		
+		recordCount = size / RECORD_BYTES;
+		bookMoves = new int[Game.MAX_MOVES];
+		bookWeights = new int[Game.MAX_MOVES];
+		legalMoves = new int[Game.MAX_MOVES];
+		windows = new MappedByteBuffer[(int) ((size + WINDOW_BYTES - 1) / WINDOW_BYTES)];
+		for (int i = 0; i < windows.length; i++){
+			long start = i * WINDOW_BYTES;
+			windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+					Math.min(WINDOW_BYTES, size - start));
+		}
+	}
+	
+	/**
+	 * Finds the book moves of the current position of a game.
+	 * @param game - the game
+	 * @param moves - buffer for the moves
+	 * @param weights - buffer for their weights, as long as moves
+	 * @return - the number of moves found, at most moves.length
+	 */
+	public int probe(Game game, int[] moves, int[] weights){
+		long key = game.getPositionKey();
+		int count = 0;
+		
+		for (long i = firstRecord(key); i < recordCount && keyAt(i) == key
+				&& count < moves.length; i++){
+			moves[count] = intAt(i, 8);
+			weights[count] = intAt(i, 12);
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Picks a book move for the current position of a game, at random
+	 * in proportion to the weights. Moves that are not legal in the
+	 * position, which a hash collision could bring, are never picked.
+	 * Uses buffers of the book, so only one thread at a time may pick.
+	 * @param game - the game
+	 * @param random - source of the choice
+	 * @return - the move, or Move.NONE if the position is not in the book
+	 */
+	public int pickMove(Game game, Random random){
+		int[] moves = bookMoves;
+		int[] weights = bookWeights;
+		int count = probe(game, moves, weights);
+		if (count == 0)
+			return Move.NONE;
+		int legalCount = game.generateLegalMoves(game.getPlayerTurn(), legalMoves);
+		
+		long total = 0;
+		for (int i = 0; i < count; i++){
+			if (!contains(legalMoves, legalCount, moves[i]))
+				weights[i] = 0;
+			total += weights[i];
+		}
+		if (total == 0)
+			return Move.NONE;
+		
+		long pick = (long) (random.nextDouble() * total);
+		for (int i = 0; i < count; i++){
+			pick -= weights[i];
+			if (pick < 0)
+				return moves[i];
+		}
+		return Move.NONE;
+	}
+	
+	public long getRecordCount(){
+		return recordCount;
+	}
+	
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	/**
+	 * Binary search for the first record with a key no smaller
+	 * than the given one.
+	 */
+	private long firstRecord(long key){
+		long low = 0;
+		long high = recordCount;
+		
+		while (low < high){
+			long middle = (low + high) >>> 1;
+			if (keyAt(middle) < key)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+	
+	private long keyAt(long record){
+		long offset = record * RECORD_BYTES;
+		return windows[(int) (offset / WINDOW_BYTES)].getLong((int) (offset % WINDOW_BYTES));
+	}
+	
+	private int intAt(long record, int field){
+		long offset = record * RECORD_BYTES;
+		return windows[(int) (offset / WINDOW_BYTES)].getInt((int) (offset % WINDOW_BYTES) + field);
+	}
+	
+	private static boolean contains(int[] moves, int count, int move){
+		for (int i = 0; i < count; i++){
+			if (moves[i] == move)
+				return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,141 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Collects book moves, for example from the openings of a game archive,
+ * and writes them as a sorted OpeningBook file. The same move from the
+ * same position is written once, with the weights added together.
+ */
+public class OpeningBookBuilder {
+	private long[] keys;
+	private int[] moves;
+	private int[] weights;
+	private int count;
+	private Game game;
+	
+	public OpeningBookBuilder(){
+		keys = new long[1024];
+		moves = new int[1024];
+		weights = new int[1024];
+		game = new Game();
+	}
+	
+	/**
+	 * Adds a move for a position.
+	 * @param key - key of the position, from Game.getPositionKey
+	 * @param move - the move, packed with Move.encode
+	 * @param weight - how often, or how strongly, to play it
+	 */
+	public void add(long key, int move, int weight){
+		if (count == keys.length){
+			keys = java.util.Arrays.copyOf(keys, 2 * count);
+			moves = java.util.Arrays.copyOf(moves, 2 * count);
+			weights = java.util.Arrays.copyOf(weights, 2 * count);
+		}
+		keys[count] = key;
+		moves[count] = move;
+		weights[count] = weight;
+		count++;
+	}
+	
+	/**
+	 * Adds the opening moves of a game read from PGN, each with
+	 * a weight of one.
+	 * @param pgn - the game
+	 * @param maxPlies - how many moves from the start to add
+	 */
+	public void addGame(PgnGame pgn, int maxPlies){
+		String fen = pgn.getTag("FEN");
+		if (fen == null)
+			game.standardSetup();
+		else
+			game.setupFen(fen);
+		
+		int plies = Math.min(maxPlies, pgn.getMoveCount());
+		for (int i = 0; i < plies; i++){
+			add(game.getPositionKey(), pgn.getMove(i), 1);
+			game.playMove(pgn.getMove(i));
+		}
+	}
+	
+	/**
+	 * Sorts the collected moves and writes them as a book.
+	 * @param path - the book file to write
+	 * @return - the number of records written
+	 * @throws IOException if the file cannot be written
+	 */
+	public long write(Path path) throws IOException {
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++){
+			order[i] = i;
+		}
+		sort(order, new int[count], 0, count);
+		
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		ByteBuffer buffer = ByteBuffer.allocate(4096 * OpeningBook.RECORD_BYTES);
+		long records = 0;
+		
+		try {
+			for (int i = 0; i < count; ){
+				int first = order[i];
+				long weight = 0;
+				for (; i < count && compare(order[i], first) == 0; i++){
+					weight += weights[order[i]];
+				}
+				
+				if (!buffer.hasRemaining())
+					flush(channel, buffer);
+				buffer.putLong(keys[first]).putInt(moves[first])
+						.putInt((int) Math.min(weight, Integer.MAX_VALUE));
+				records++;
+			}
+			flush(channel, buffer);
+		} finally {
+			channel.close();
+		}
+		return records;
+	}
+	
+	/**
+	 * Orders entries by key, then move, the order books are searched in.
+	 */
+	private int compare(int a, int b){
+		if (keys[a] != keys[b])
+			return (keys[a] < keys[b]) ? -1 : 1;
+		return (moves[a] < moves[b]) ? -1 : (moves[a] == moves[b] ? 0 : 1);
+	}
+	
+	/**
+	 * Merge sort of entry numbers, using scratch as working space.
+	 */
+	private void sort(int[] order, int[] scratch, int from, int to){
+		if (to - from < 2)
+			return;
+		
+		int middle = (from + to) >>> 1;
+		sort(order, scratch, from, middle);
+		sort(order, scratch, middle, to);
+		
+		int left = from;
+		int right = middle;
+		for (int i = from; i < to; i++){
+			if (right >= to || (left < middle && compare(order[left], order[right]) <= 0))
+				scratch[i] = order[left++];
+			else
+				scratch[i] = order[right++];
+		}
+		System.arraycopy(scratch, from, order, from, to - from);
+	}
+	
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
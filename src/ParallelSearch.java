@@ -0,0 +1,158 @@
+
+/**
+ * Runs several searches of the same position at once, one per thread,
+ * in the style of Lazy SMP: every thread searches its own copy of the
+ * game, and they help each other only through the shared, lock-free
+ * transposition table. The calling thread runs the main search, whose
+ * result is returned; helpers are stopped when it finishes.
+ */
+public class ParallelSearch {
+	private TranspositionTable table;
+	private int threadCount;
+	private Tablebase tablebase;
+	private Search.Listener listener;
+	private volatile Search[] searches;
+	private volatile boolean stopped;
+	
+	/**
+	 * @param table - the table shared by every thread
+	 * @param threadCount - number of threads, including the calling one
+	 */
+	public ParallelSearch(TranspositionTable table, int threadCount){
+		this.table = table;
+		this.threadCount = Math.max(1, threadCount);
+		this.searches = new Search[0];
+	}
+	
+	/**
+	 * Gives every thread the same endgame tables, which they only read.
+	 * @param tablebase - the tables, or null for none
+	 */
+	public void setTablebase(Tablebase tablebase){
+		this.tablebase = tablebase;
+	}
+	
+	/**
+	 * @param listener - told about each iteration the main search
+	 * completes, or null
+	 */
+	public void setListener(Search.Listener listener){
+		this.listener = listener;
+	}
+	
+	/**
+	 * Searches the current position of the game. The game itself
+	 * is only read, each thread works on a copy of it.
+	 * @param game - the position to search
+	 * @param maxDepth - deepest iteration to run
+	 * @param timeLimitMillis - time budget, 0 for none
+	 * @param maxNodes - node budget of the main search, 0 for none
+	 * @return - the best move found, Move.NONE if there are no legal moves
+	 */
+	public int search(Game game, final int maxDepth, final long timeLimitMillis, final long maxNodes){
+		Search[] workers = new Search[threadCount];
+		for (int i = 0; i < threadCount; i++){
+			workers[i] = new Search(game.copy(), table);
+			workers[i].setTablebase(tablebase);
+			if (i > 0)
+				workers[i].setHelper(1 + (i % 2));
+			else
+				workers[i].setListener(listener);
+		}
+		searches = workers;
+		// A stop that came while the workers were being made
+		if (stopped)
+			stopAll(workers);
+		
+		Thread[] helpers = new Thread[threadCount - 1];
+		for (int i = 1; i < threadCount; i++){
+			final Search helper = workers[i];
+			helpers[i - 1] = new Thread(new Runnable(){
+				public void run(){
+					helper.search(maxDepth, timeLimitMillis, 0);
+				}
+			}, "search-helper-" + i);
+			helpers[i - 1].setDaemon(true);
+			helpers[i - 1].start();
+		}
+		
+		int bestMove = workers[0].search(maxDepth, timeLimitMillis, maxNodes);
+		
+		stopAll(workers);
+		for (Thread thread : helpers){
+			joinQuietly(thread);
+		}
+		// Cleared at the end rather than the start, as in Search
+		stopped = false;
+		return bestMove;
+	}
+	
+	/**
+	 * Asks a running search to finish as soon as possible, which is
+	 * once the main search has searched its first root move. A search
+	 * that has not started yet stops after that move. Safe to
+	 * call from another thread.
+	 */
+	public void stop(){
+		stopped = true;
+		stopAll(searches);
+	}
+	
+	private static void stopAll(Search[] workers){
+		for (Search worker : workers){
+			worker.stop();
+		}
+	}
+	
+	private static void joinQuietly(Thread thread){
+		boolean interrupted = false;
+		while (thread.isAlive()){
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+	
+	// Results of the main search below
+	
+	private Search mainSearch(){
+		if (searches.length == 0)
+			throw new IllegalStateException("No search has been run");
+		return searches[0];
+	}
+	
+	public int getBestMove(){
+		return mainSearch().getBestMove();
+	}
+	
+	public int getBestScore(){
+		return mainSearch().getBestScore();
+	}
+	
+	public int[] getPrincipalVariation(){
+		return mainSearch().getPrincipalVariation();
+	}
+	
+	public int getCompletedDepth(){
+		return mainSearch().getCompletedDepth();
+	}
+	
+	/**
+	 * Nodes searched by every thread together.
+	 */
+	public long getNodes(){
+		long nodes = 0;
+		for (Search worker : searches){
+			nodes += worker.getNodes();
+		}
+		return nodes;
+	}
+	
+	public int getThreadCount(){
+		return threadCount;
+	}
+}
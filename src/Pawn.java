@@ -5,6 +5,57 @@ public class Pawn extends Piece{
 		super(board, color, xLoc, yLoc);
 	}
 	
+	public int getPieceType(){
+		return PAWN;
+	}
+	
+	public int generateMoves(int[] moves, int count){
+		if (!onBoard()) return count;
+		
+		int xLoc = this.getXLocation();
+		int yLoc = this.getYLocation();
+		int oneStep = forwardStep();
+		
+		// Pushes, one step then two on the first move
+		if (chessBoard.isEmptyPosition(xLoc + oneStep, yLoc)){
+			moves[count++] = Move.encode(xLoc, yLoc, xLoc + oneStep, yLoc);
+			
+			if (!hasMoved && chessBoard.isEmptyPosition(xLoc + 2 * oneStep, yLoc))
+				moves[count++] = Move.encode(xLoc, yLoc, xLoc + 2 * oneStep, yLoc);
+		}
+		
+		// Captures
+		count = addCaptureIfPossible(xLoc + oneStep, yLoc - 1, moves, count);
+		return addCaptureIfPossible(xLoc + oneStep, yLoc + 1, moves, count);
+	}
+	
+	private int addCaptureIfPossible(int xPosition, int yPosition, int[] moves, int count){
+		Piece target = chessBoard.pieceAt(xPosition, yPosition);
+		
+		if (target != null && target.getColor() != this.getColor())
+			moves[count++] = Move.encode(this.getXLocation(), this.getYLocation(),
+					xPosition, yPosition);
+		return count;
+	}
+	
+	/**
+	 * Direction a pawn walks in along x.
+	 * Black pawns move down, white pawns move up.
+	 * @return 1 for black, -1 for white
+	 */
+	private int forwardStep(){
+		if (this.getColor() == BLACK)
+			return 1;
+		return -1;
+	}
+	
+	public void markAttacks(int xPosition, int yPosition, int delta){
+		int oneStep = forwardStep();
+		
+		chessBoard.addAttack(this.getColor(), xPosition + oneStep, yPosition - 1, delta);
+		chessBoard.addAttack(this.getColor(), xPosition + oneStep, yPosition + 1, delta);
+	}
+	
 	public boolean canMoveTo(int xPosition, int yPosition){
 		if(canMoveGenerics(xPosition,yPosition)){
 			return pawnMovement(xPosition, yPosition);
@@ -46,10 +97,11 @@ public class Pawn extends Piece{
 				return true;
 			}
 		}
-		// Two spaces
+		// Two spaces, without jumping over a piece
 		else if (!hasMoved){
 			if (xPosition - this.getXLocation() == two_step){
-				if (yPosition == this.getYLocation() && target == null){
+				if (yPosition == this.getYLocation() && target == null &&
+						chessBoard.isEmptyPosition(this.getXLocation() + one_step, yPosition)){
 					return true;
 				}
 			}
@@ -0,0 +1,111 @@
+
+/**
+ * Fixed size cache of pawn structure results, keyed by the pawn-only
+ * Zobrist key of the Board.
+ *
+ * Pawns move far less often than other pieces, so most positions met
+ * in a search share their pawn structure with one scored before. Each
+ * slot holds the key, the structure score (white minus black) and the
+ * passed pawns of both colors, in parallel arrays so that probing and
+ * storing never allocate. A new result always replaces the old one in
+ * its slot. Tables are not shared between threads.
+ */
+public class PawnHashTable {
+	// Bytes used by one slot: key, score and two passed pawn masks
+	private static final int SLOT_BYTES = 8 + 4 + 2 * 8;
+	
+	private long[] keys;
+	private int[] scores;
+	private long[] passedPawns;
+	private int slotMask;
+	private long hits;
+	private long misses;
+	
+	/**
+	 * Creates a table using at most the given amount of memory,
+	 * rounded down to a power of two number of slots.
+	 * @param kilobytes memory budget, at least 1
+	 */
+	public PawnHashTable(int kilobytes){
+		int slots = Integer.highestOneBit(Math.max(1, kilobytes) * 1024 / SLOT_BYTES);
+		
+		keys = new long[slots];
+		scores = new int[slots];
+		passedPawns = new long[2 * slots];
+		slotMask = slots - 1;
+	}
+	
+	/**
+	 * Looks a pawn structure up and counts the hit or miss.
+	 * Empty slots hold key 0 with no score and no passed pawns,
+	 * which is the right answer for a board without pawns.
+	 * @param pawnKey key from Board.getPawnKey
+	 * @return the slot holding the structure, or -1 if it is not stored
+	 */
+	public int find(long pawnKey){
+		int slot = slotIndex(pawnKey);
+		
+		if (keys[slot] == pawnKey){
+			hits++;
+			return slot;
+		}
+		misses++;
+		return -1;
+	}
+	
+	/**
+	 * Stores the pawn structure terms of a position.
+	 * @param pawnKey key from Board.getPawnKey
+	 * @param score pawn structure score, white minus black
+	 * @param blackPassed black's passed pawns
+	 * @param whitePassed white's passed pawns
+	 * @return the slot the structure was stored in
+	 */
+	public int store(long pawnKey, int score, long blackPassed, long whitePassed){
+		int slot = slotIndex(pawnKey);
+		
+		keys[slot] = pawnKey;
+		scores[slot] = score;
+		passedPawns[2 * slot + Game.BLACK] = blackPassed;
+		passedPawns[2 * slot + Game.WHITE] = whitePassed;
+		return slot;
+	}
+	
+	public int getScore(int slot){
+		return scores[slot];
+	}
+	
+	/**
+	 * Passed pawns of one color, as a bitboard.
+	 */
+	public long getPassedPawns(int slot, int color){
+		return passedPawns[2 * slot + color];
+	}
+	
+	public void clear(){
+		java.util.Arrays.fill(keys, 0L);
+		java.util.Arrays.fill(scores, 0);
+		java.util.Arrays.fill(passedPawns, 0L);
+		hits = 0;
+		misses = 0;
+	}
+	
+	/**
+	 * Number of pawn structures the table can hold.
+	 */
+	public int getCapacity(){
+		return keys.length;
+	}
+	
+	public long getHits(){
+		return hits;
+	}
+	
+	public long getMisses(){
+		return misses;
+	}
+	
+	private int slotIndex(long pawnKey){
+		return (int) (pawnKey ^ (pawnKey >>> 32)) & slotMask;
+	}
+}
@@ -0,0 +1,145 @@
+import java.io.PrintStream;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth.
+ * Used to check move generation against known counts and to
+ * measure how fast moves can be generated, made and taken back.
+ */
+public class Perft {
+	/**
+	 * Reference positions, given as FEN records, and expected
+	 * leaf counts from depth 1 upward.
+	 *
+	 * Castling, en passant and promotion are not part of the rules here,
+	 * so only depths where none of them can happen are listed.
+	 */
+	public static final String[] REFERENCE_POSITIONS = {
+		Game.STANDARD_PLACEMENT + " w - - 0 1",
+		"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+		"8/1n4N1/2k5/8/8/5K2/1N4n1/8 w - - 0 1",
+		"B6b/8/8/8/2K5/4k3/8/b6B w - - 0 1",
+		"7k/RR6/8/8/8/8/rr6/7K w - - 0 1",
+	};
+	public static final long[][] REFERENCE_COUNTS = {
+		{20, 400, 8902, 197281},
+		{14, 191},
+		{14, 195, 2760},
+		{17, 278, 4607, 76778},
+		{19, 275, 5300, 104342},
+	};
+	
+	private Game game;
+	private int[][] moveBuffers;
+	
+	public Perft(Game game){
+		this.game = game;
+		moveBuffers = new int[Game.MAX_PLY][];
+	}
+	
+	/**
+	 * Counts the positions reached after exactly depth moves
+	 * from the current position of the game.
+	 * @param depth - number of moves to play
+	 * @return - the number of leaf positions
+	 */
+	public long perft(int depth){
+		return perft(depth, 0);
+	}
+	
+	private long perft(int depth, int ply){
+		if (depth == 0)
+			return 1;
+		
+		int[] moves = moveBuffer(ply);
+		int moveCount = game.generateLegalMoves(game.getPlayerTurn(), moves);
+		
+		// The last layer only needs to be counted, not played
+		if (depth == 1)
+			return moveCount;
+		
+		long nodes = 0;
+		for (int i = 0; i < moveCount; i++){
+			game.makeMove(moves[i]);
+			nodes += perft(depth - 1, ply + 1);
+			game.unmakeMove();
+		}
+		return nodes;
+	}
+	
+	/**
+	 * Prints the leaf count below each legal move, which helps
+	 * to find the move where two counts start to differ.
+	 * @param depth - number of moves to play
+	 * @param out - where to print
+	 * @return - the total number of leaf positions
+	 */
+	public long divide(int depth, PrintStream out){
+		int[] moves = moveBuffer(0);
+		int moveCount = game.generateLegalMoves(game.getPlayerTurn(), moves);
+		long total = 0;
+		
+		for (int i = 0; i < moveCount; i++){
+			game.makeMove(moves[i]);
+			long nodes = perft(depth - 1, 1);
+			game.unmakeMove();
+			
+			out.println(Move.toString(moves[i]) + ": " + nodes);
+			total += nodes;
+		}
+		out.println("Total: " + total);
+		return total;
+	}
+	
+	private int[] moveBuffer(int ply){
+		if (moveBuffers[ply] == null)
+			moveBuffers[ply] = new int[Game.MAX_MOVES];
+		return moveBuffers[ply];
+	}
+	
+	/**
+	 * Runs every reference position up to the given depth, printing
+	 * each count next to the expected one along with nodes per second.
+	 * @param maxDepth - deepest depth to run, capped by the known counts
+	 * @param out - where to print
+	 * @return - True if every count matched
+	 */
+	public static boolean runSuite(int maxDepth, PrintStream out){
+		boolean allMatched = true;
+		long totalNodes = 0;
+		long totalNanos = 0;
+		
+		for (int i = 0; i < REFERENCE_POSITIONS.length; i++){
+			Game game = new Game();
+			Perft perft = new Perft(game);
+			out.println(REFERENCE_POSITIONS[i]);
+			
+			for (int depth = 1; depth <= maxDepth && depth <= REFERENCE_COUNTS[i].length; depth++){
+				game.setupFen(REFERENCE_POSITIONS[i]);
+				
+				long start = System.nanoTime();
+				long nodes = perft.perft(depth);
+				long elapsed = System.nanoTime() - start;
+				long expected = REFERENCE_COUNTS[i][depth - 1];
+				
+				totalNodes += nodes;
+				totalNanos += elapsed;
+				if (nodes != expected)
+					allMatched = false;
+				
+				out.println("  depth " + depth + ": " + nodes + " nodes"
+						+ (nodes == expected ? "" : " (expected " + expected + ")")
+						+ ", " + nodesPerSecond(nodes, elapsed) + " nodes/sec");
+			}
+		}
+		out.println("Total: " + totalNodes + " nodes, "
+				+ nodesPerSecond(totalNodes, totalNanos) + " nodes/sec");
+		out.println(allMatched ? "All counts matched" : "COUNT MISMATCH");
+		return allMatched;
+	}
+	
+	private static long nodesPerSecond(long nodes, long nanos){
+		if (nanos <= 0)
+			return 0;
+		return nodes * 1000000000L / nanos;
+	}
+}
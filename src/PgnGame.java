@@ -0,0 +1,137 @@
+
+/**
+ * One game read by a PgnReader: its tags, its moves as played on the
+ * board, its result, and what the replay found. The reader fills the
+ * same object for every game, so it only holds the game last read.
+ */
+public class PgnGame {
+	public static final String UNKNOWN_RESULT = "*";
+	
+	private java.util.Map<String, String> tags;
+	private int[] moves;
+	private int moveCount;
+	private String result;
+	private int illegalPly;
+	private String illegalMove;
+	private boolean checkmate;
+	private boolean stalemate;
+	
+	public PgnGame(){
+		tags = new java.util.LinkedHashMap<String, String>();
+		moves = new int[256];
+		reset();
+	}
+	
+	/**
+	 * Forgets the game, ready for the next one.
+	 */
+	void reset(){
+		tags.clear();
+		moveCount = 0;
+		result = UNKNOWN_RESULT;
+		illegalPly = -1;
+		illegalMove = null;
+		checkmate = false;
+		stalemate = false;
+	}
+	
+	void addTag(String name, String value){
+		tags.put(name, value);
+	}
+	
+	void addMove(int move){
+		if (moveCount == moves.length)
+			moves = java.util.Arrays.copyOf(moves, 2 * moveCount);
+		moves[moveCount++] = move;
+	}
+	
+	void setResult(String result){
+		this.result = result;
+	}
+	
+	/**
+	 * Records the first move that could not be played. Moves after
+	 * it are not replayed.
+	 */
+	void setIllegalMove(int ply, String san){
+		illegalPly = ply;
+		illegalMove = san;
+	}
+	
+	void setFinalState(boolean checkmate, boolean stalemate){
+		this.checkmate = checkmate;
+		this.stalemate = stalemate;
+	}
+	
+	/**
+	 * Returns the value of a tag pair, such as "White" or "Event".
+	 * @return - the value, or null if the game has no such tag
+	 */
+	public String getTag(String name){
+		return tags.get(name);
+	}
+	
+	public java.util.Map<String, String> getTags(){
+		return java.util.Collections.unmodifiableMap(tags);
+	}
+	
+	/**
+	 * Number of moves replayed, up to the first illegal one.
+	 */
+	public int getMoveCount(){
+		return moveCount;
+	}
+	
+	/**
+	 * Returns a replayed move, packed with Move.encode.
+	 * @param ply - index of the move, from 0
+	 */
+	public int getMove(int ply){
+		if (ply < 0 || ply >= moveCount)
+			throw new IndexOutOfBoundsException("Ply " + ply + " of " + moveCount);
+		return moves[ply];
+	}
+	
+	/**
+	 * Result given in the move text: "1-0", "0-1", "1/2-1/2" or "*".
+	 */
+	public String getResult(){
+		return result;
+	}
+	
+	public boolean hasIllegalMove(){
+		return illegalPly >= 0;
+	}
+	
+	/**
+	 * Ply of the first move that could not be played, from 0.
+	 * @return - the ply, or -1 if every move was legal
+	 */
+	public int getIllegalPly(){
+		return illegalPly;
+	}
+	
+	/**
+	 * Text of the first move that could not be played.
+	 * @return - the move as written, or null if every move was legal
+	 */
+	public String getIllegalMove(){
+		return illegalMove;
+	}
+	
+	/**
+	 * Checks whether the player to move after the last move is
+	 * checkmated. Always false for games with an illegal move.
+	 */
+	public boolean isCheckmate(){
+		return checkmate;
+	}
+	
+	/**
+	 * Checks whether the player to move after the last move is
+	 * stalemated. Always false for games with an illegal move.
+	 */
+	public boolean isStalemate(){
+		return stalemate;
+	}
+}
@@ -0,0 +1,319 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the games of a PGN file one at a time, replaying each move
+ * on a board as it is read.
+ *
+ * The input is read through a fixed size NIO buffer, or straight from a
+ * buffer of games such as a mapped part of a file, and moves are
+ * matched against the legal moves of the position straight from that
+ * buffer, so memory use does not grow with the size of the file: only
+ * the game being read is ever held. Comments, variations and numeric
+ * annotations are skipped. A game starting from a FEN tag is set up
+ * from it. When a move cannot be played, it is recorded in the game
+ * and the rest of that game's moves are skipped.
+ */
+public class PgnReader implements Closeable {
+	private static final int BUFFER_BYTES = 64 * 1024;
+	private static final int NO_BYTE = -1;
+	
+	private ReadableByteChannel channel;
+	private ByteBuffer buffer;
+	private int pushedBack;
+	
+	private Game game;
+	private int[] moveBuffer;
+	private byte[] token;
+	private int tokenLength;
+	private AsciiSequence tokenText;
+	private PgnGame current;
+	private long gamesRead;
+	
+	public PgnReader(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.READ));
+	}
+	
+	public PgnReader(ReadableByteChannel channel){
+		this(channel, ByteBuffer.allocateDirect(BUFFER_BYTES));
+		buffer.flip();
+	}
+	
+	/**
+	 * Reads the games held in a buffer, for example part of a
+	 * memory-mapped file, from its position to its limit.
+	 */
+	public PgnReader(ByteBuffer games){
+		this(null, games);
+	}
+	
+	private PgnReader(ReadableByteChannel channel, ByteBuffer buffer){
+		this.channel = channel;
+		this.buffer = buffer;
+		pushedBack = NO_BYTE;
+		
+		game = new Game();
+		moveBuffer = new int[Game.MAX_MOVES];
+		token = new byte[64];
+		tokenText = new AsciiSequence();
+		current = new PgnGame();
+	}
+	
+	/**
+	 * Reads and replays the next game.
+	 *
+	 * The same PgnGame is filled for every game, so it is only
+	 * valid until the next call.
+	 * @return - the game, or null at the end of the input
+	 * @throws IOException if the input cannot be read
+	 */
+	public PgnGame next() throws IOException {
+		current.reset();
+		game.standardSetup();
+		boolean started = false;
+		boolean inMoves = false;
+		int c;
+		
+		while ((c = read()) != NO_BYTE){
+			switch (c){
+			case ' ': case '\t': case '\r': case '\n':
+				break;
+			case '[':
+				// A tag after move text without a result starts the next game
+				if (inMoves){
+					pushedBack = c;
+					return finishGame();
+				}
+				readTag();
+				started = true;
+				break;
+			case '{':
+				skipUntil('}');
+				break;
+			case ';':
+			case '%':
+				skipUntil('\n');
+				break;
+			case '(':
+				skipVariation();
+				break;
+			case '$':
+				readToken(c);
+				break;
+			case ')':
+				break;
+			default:
+				readToken(c);
+				started = true;
+				inMoves = true;
+				if (isResult()){
+					current.setResult(tokenText.toString());
+					return finishGame();
+				}
+				readMove();
+			}
+		}
+		return started ? finishGame() : null;
+	}
+	
+	/**
+	 * The board the games are replayed on, left at the final
+	 * position of the game last read.
+	 */
+	public Game getGame(){
+		return game;
+	}
+	
+	public long getGamesRead(){
+		return gamesRead;
+	}
+	
+	public void close() throws IOException {
+		if (channel != null)
+			channel.close();
+	}
+	
+	private PgnGame finishGame(){
+		if (!current.hasIllegalMove()){
+			int player = game.getPlayerTurn();
+			boolean canMove = game.canMove(player);
+			boolean inCheck = game.isKingInCheck(player);
+			current.setFinalState(inCheck && !canMove, !inCheck && !canMove);
+		}
+		gamesRead++;
+		return current;
+	}
+	
+	/**
+	 * Reads a tag pair such as [White "Carlsen"], after the '['.
+	 */
+	private void readTag() throws IOException {
+		int c = skipSpaces();
+		tokenLength = 0;
+		while (c != NO_BYTE && c != ' ' && c != '"' && c != ']'){
+			appendToken(c);
+			c = read();
+		}
+		String name = new String(token, 0, tokenLength, "US-ASCII");
+		
+		while (c != NO_BYTE && c != '"' && c != ']'){
+			c = read();
+		}
+		tokenLength = 0;
+		if (c == '"'){
+			for (c = read(); c != NO_BYTE && c != '"'; c = read()){
+				if (c == '\\')
+					c = read();
+				appendToken(c);
+			}
+			skipUntil(']');
+		}
+		String value = new String(token, 0, tokenLength, "UTF-8");
+		current.addTag(name, value);
+		
+		if (name.equals("FEN") && !current.hasIllegalMove()){
+			try {
+				game.setupFen(value);
+			} catch (IllegalArgumentException e) {
+				current.setIllegalMove(0, "[FEN \"" + value + "\"]");
+			}
+		}
+	}
+	
+	/**
+	 * Plays the move in the token buffer, after stripping any move
+	 * number in front of it, as in "12.e4" or "12...Nf6".
+	 */
+	private void readMove(){
+		int start = 0;
+		while (start < tokenLength && token[start] >= '0' && token[start] <= '9'){
+			start++;
+		}
+		if (start < tokenLength && token[start] == '.'){
+			while (start < tokenLength && token[start] == '.'){
+				start++;
+			}
+		}
+		else
+			start = 0;
+		
+		if (start == tokenLength || current.hasIllegalMove())
+			return;
+		
+		tokenText.wrap(token, start, tokenLength - start);
+		int move = San.parse(game, tokenText, moveBuffer);
+		if (move == Move.NONE){
+			current.setIllegalMove(current.getMoveCount(), tokenText.toString());
+			return;
+		}
+		
+		game.playMove(move);
+		current.addMove(move);
+	}
+	
+	private boolean isResult(){
+		tokenText.wrap(token, 0, tokenLength);
+		return equalsToken("1-0") || equalsToken("0-1")
+				|| equalsToken("1/2-1/2") || equalsToken(PgnGame.UNKNOWN_RESULT);
+	}
+	
+	private boolean equalsToken(String text){
+		if (text.length() != tokenLength)
+			return false;
+		for (int i = 0; i < tokenLength; i++){
+			if (token[i] != text.charAt(i))
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Reads a run of characters up to whitespace or a character
+	 * that starts something else, into the token buffer.
+	 */
+	private void readToken(int first) throws IOException {
+		tokenLength = 0;
+		appendToken(first);
+		
+		for (int c = read(); c != NO_BYTE; c = read()){
+			if (c == ' ' || c == '\t' || c == '\r' || c == '\n')
+				break;
+			if (c == '{' || c == '(' || c == ')' || c == '[' || c == ';' || c == '$'){
+				pushedBack = c;
+				break;
+			}
+			appendToken(c);
+		}
+	}
+	
+	private void appendToken(int c){
+		if (tokenLength == token.length)
+			token = java.util.Arrays.copyOf(token, 2 * tokenLength);
+		token[tokenLength++] = (byte) c;
+	}
+	
+	/**
+	 * Skips a recursive annotation variation, after its '('.
+	 */
+	private void skipVariation() throws IOException {
+		int depth = 1;
+		
+		for (int c = read(); c != NO_BYTE && depth > 0; c = read()){
+			if (c == '(')
+				depth++;
+			else if (c == ')')
+				depth--;
+			else if (c == '{')
+				skipUntil('}');
+			else if (c == ';')
+				skipUntil('\n');
+			
+			if (depth == 0)
+				return;
+		}
+	}
+	
+	private void skipUntil(int end) throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c != NO_BYTE && c != end);
+	}
+	
+	private int skipSpaces() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c == ' ' || c == '\t');
+		return c;
+	}
+	
+	/**
+	 * Returns the next byte of input, refilling the buffer from
+	 * the channel, if there is one, as needed.
+	 * @return - the byte, or NO_BYTE at the end of the input
+	 */
+	private int read() throws IOException {
+		if (pushedBack != NO_BYTE){
+			int c = pushedBack;
+			pushedBack = NO_BYTE;
+			return c;
+		}
+		
+		while (!buffer.hasRemaining()){
+			if (channel == null)
+				return NO_BYTE;
+			buffer.clear();
+			int count = channel.read(buffer);
+			buffer.flip();
+			if (count < 0)
+				return NO_BYTE;
+		}
+		return buffer.get() & 0xFF;
+	}
+}
@@ -2,6 +2,18 @@
 public class Piece {
 	public static final int BLACK = 0;
 	public static final int WHITE = 1;
+	public static final int PAWN = 0;
+	public static final int KNIGHT = 1;
+	public static final int BISHOP = 2;
+	public static final int ROOK = 3;
+	public static final int QUEEN = 4;
+	public static final int KING = 5;
+	public static final int GENERIC = 6;
+	public static final int PIECE_TYPES = 7;
+	protected static final int[] STRAIGHT_X = {1, -1, 0, 0};
+	protected static final int[] STRAIGHT_Y = {0, 0, 1, -1};
+	protected static final int[] DIAGONAL_X = {1, 1, -1, -1};
+	protected static final int[] DIAGONAL_Y = {1, -1, 1, -1};
 	private int xLocation;
 	private int yLocation;
 	private int color;
@@ -45,6 +57,200 @@ public class Piece {
 		return canMoveGenerics(xPosition, yPosition);
 	}
 	
+	/**
+	 * Adds every spot this piece could move to into a move buffer,
+	 * ignoring whether the move would leave its king in check.
+	 * Each move is packed with Move.encode.
+	 * 
+	 * This method should be overwritten. Only
+	 * should be used in this form for the generic chess piece,
+	 * which may move to any spot not held by an ally.
+	 * 
+	 * @param moves The buffer to fill
+	 * @param count Number of moves already in the buffer
+	 * @return The number of moves in the buffer afterwards
+	 */
+	public int generateMoves(int[] moves, int count){
+		if (!onBoard()) return count;
+		
+		for (int x = 0; x < chessBoard.getXDimension(); x++){
+			for (int y = 0; y < chessBoard.getYDimension(); y++){
+				count = addMoveIfPossible(x, y, moves, count);
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Helper function that adds a move to the buffer if the
+	 * target spot passes canMoveGenerics.
+	 * @param xPosition X location of move.
+	 * @param yPosition Y location of move.
+	 * @param moves The buffer to fill
+	 * @param count Number of moves already in the buffer
+	 * @return The number of moves in the buffer afterwards
+	 */
+	protected int addMoveIfPossible(int xPosition, int yPosition, int[] moves, int count){
+		if (canMoveGenerics(xPosition, yPosition)){
+			moves[count++] = Move.encode(xLocation, yLocation, xPosition, yPosition);
+		}
+		return count;
+	}
+	
+	/**
+	 * Helper function that adds the moves found by jumping
+	 * by each of the given offsets (knights, kings).
+	 * @param xOffsets X offset of each jump
+	 * @param yOffsets Y offset of each jump
+	 * @param moves The buffer to fill
+	 * @param count Number of moves already in the buffer
+	 * @return The number of moves in the buffer afterwards
+	 */
+	protected int generateOffsetMoves(int[] xOffsets, int[] yOffsets, int[] moves, int count){
+		if (!onBoard()) return count;
+		
+		int from = chessBoard.mailboxIndex(xLocation, yLocation);
+		for (int i = 0; i < xOffsets.length; i++){
+			int index = from + chessBoard.mailboxOffset(xOffsets[i], yOffsets[i]);
+			if (chessBoard.isOffBoard(index))
+				continue;
+			
+			Piece target = chessBoard.pieceAtIndex(index);
+			if (target == null || target.getColor() != color)
+				moves[count++] = Move.encode(xLocation, yLocation,
+						xLocation + xOffsets[i], yLocation + yOffsets[i]);
+		}
+		return count;
+	}
+	
+	/**
+	 * Helper function that adds the moves found by walking
+	 * along each of the given directions until a piece is hit
+	 * (rooks, bishops, queens).
+	 * @param xSteps X step of each direction
+	 * @param ySteps Y step of each direction
+	 * @param moves The buffer to fill
+	 * @param count Number of moves already in the buffer
+	 * @return The number of moves in the buffer afterwards
+	 */
+	protected int generateRayMoves(int[] xSteps, int[] ySteps, int[] moves, int count){
+		if (!onBoard()) return count;
+		
+		int from = chessBoard.mailboxIndex(xLocation, yLocation);
+		for (int i = 0; i < xSteps.length; i++){
+			int offset = chessBoard.mailboxOffset(xSteps[i], ySteps[i]);
+			int x = xLocation + xSteps[i];
+			int y = yLocation + ySteps[i];
+			
+			for (int index = from + offset; !chessBoard.isOffBoard(index); index += offset){
+				Piece target = chessBoard.pieceAtIndex(index);
+				
+				if (target == null || target.getColor() != color)
+					moves[count++] = Move.encode(xLocation, yLocation, x, y);
+				if (target != null)
+					break;
+				
+				x += xSteps[i];
+				y += ySteps[i];
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Helper function that adds a move to each square of a bitboard
+	 * not held by an ally. Used by sliding pieces on the standard
+	 * board, whose targets come from the Magic tables.
+	 * @param targets The squares reached, numbered as in BitBoard
+	 * @param moves The buffer to fill
+	 * @param count Number of moves already in the buffer
+	 * @return The number of moves in the buffer afterwards
+	 */
+	protected int addTargetMoves(long targets, int[] moves, int count){
+		targets &= ~chessBoard.getBitBoard().getColorOccupancy(color);
+		for (; targets != 0; targets &= targets - 1){
+			int square = Long.numberOfTrailingZeros(targets);
+			moves[count++] = Move.encode(xLocation, yLocation, square >>> 3, square & 7);
+		}
+		return count;
+	}
+	
+	/**
+	 * Helper function that gives the squares on the standard board
+	 * whose pieces could block a sliding piece.
+	 */
+	protected long occupiedSquares(){
+		return chessBoard.getBitBoard().getOccupied();
+	}
+	
+	/**
+	 * Marks every spot this piece attacks from a location on the
+	 * board's attack maps. Sliding pieces stop at the first piece
+	 * in each direction, which is included.
+	 * 
+	 * This method should be overwritten. Only
+	 * should be used in this form for the generic chess piece,
+	 * which attacks every other spot.
+	 * 
+	 * @param xPosition The x location of the piece
+	 * @param yPosition The y location of the piece
+	 * @param delta 1 when the piece arrives, -1 when it leaves
+	 */
+	public void markAttacks(int xPosition, int yPosition, int delta){
+		for (int x = 0; x < chessBoard.getXDimension(); x++){
+			for (int y = 0; y < chessBoard.getYDimension(); y++){
+				if (x != xPosition || y != yPosition)
+					chessBoard.addAttack(color, x, y, delta);
+			}
+		}
+	}
+	
+	/**
+	 * Checks whether this piece attacks any distance along a
+	 * direction, so that its attack can be blocked by other pieces.
+	 * 
+	 * Should be overwritten by sliding pieces.
+	 * @param xStep X step of the direction
+	 * @param yStep Y step of the direction
+	 * @return true if the piece slides along the direction
+	 */
+	public boolean slidesAlong(int xStep, int yStep){
+		return false;
+	}
+	
+	/**
+	 * Helper function that marks the spots found by jumping
+	 * by each of the given offsets (knights, kings).
+	 */
+	protected void markOffsetAttacks(int xPosition, int yPosition,
+			int[] xOffsets, int[] yOffsets, int delta){
+		int from = chessBoard.mailboxIndex(xPosition, yPosition);
+		for (int i = 0; i < xOffsets.length; i++){
+			int index = from + chessBoard.mailboxOffset(xOffsets[i], yOffsets[i]);
+			if (!chessBoard.isOffBoard(index))
+				chessBoard.addAttackAt(color, index, delta);
+		}
+	}
+	
+	/**
+	 * Helper function that marks the spots found by walking
+	 * along each of the given directions, up to and including
+	 * the first piece (rooks, bishops, queens).
+	 */
+	protected void markRayAttacks(int xPosition, int yPosition,
+			int[] xSteps, int[] ySteps, int delta){
+		int from = chessBoard.mailboxIndex(xPosition, yPosition);
+		for (int i = 0; i < xSteps.length; i++){
+			int offset = chessBoard.mailboxOffset(xSteps[i], ySteps[i]);
+			
+			for (int index = from + offset; !chessBoard.isOffBoard(index); index += offset){
+				chessBoard.addAttackAt(color, index, delta);
+				if (chessBoard.pieceAtIndex(index) != null)
+					break;
+			}
+		}
+	}
+	
 	/**
 	 * Helper function that checks whether it is possible,
 	 * in the most generic sense, for a chess piece to move to a spot.
@@ -85,6 +291,23 @@ public class Piece {
 			hasMoved = true;
 	}
 	
+	/**
+	 * Puts the current chess piece at a given location without
+	 * capturing or marking it as moved. Used to take moves back.
+	 * 
+	 * ASSERT that the location is empty.
+	 * @param xPosition The x location of where to put the piece.
+	 * @param yPosition The y location of where to put the piece.
+	 */
+	public void placeAt(int xPosition, int yPosition){
+		if (chessBoard.pieceAt(xLocation, yLocation) == this)
+			chessBoard.removeFromBoard(this);
+		this.xLocation = xPosition;
+		this.yLocation = yPosition;
+		
+		chessBoard.placePiece(this, xPosition, yPosition);
+	}
+	
 	/**
 	 * Removes the current chess piece off of the board
 	 */
@@ -129,68 +352,47 @@ public class Piece {
 	public Board getBoard(){
 		return chessBoard;
 	}
+	
+	public boolean hasMoved(){
+		return hasMoved;
+	}
+	
+	public void setHasMoved(boolean hasMoved){
+		this.hasMoved = hasMoved;
+	}
+	
+	/**
+	 * Returns the kind of chess piece, used by the board to
+	 * index its bitboards. Should be overwritten by specific pieces.
+	 * @return one of the piece type constants
+	 */
+	public int getPieceType(){
+		return GENERIC;
+	}
 
 	/**
 	 * Helper function for determining whether a piece can
 	 * move in a straight line, in any direction.
 	 * @param xPosition The specified x location
 	 * @param yPosition The specified y location
-	 * @return
+	 * @return true if the line is straight and nothing is in between
 	 */
 	protected boolean isMovingStraight(int xPosition, int yPosition) {
 		int currX = this.getXLocation();
 		int currY = this.getYLocation();
 		
-		int smallerVal;
-		int largerVal;
+		// Exactly one of the coordinates must stay fixed
+		if ((currX == xPosition) == (currY == yPosition) || !onBoard())
+			return false;
 		
-		// Fixed X Position
-		if (currX == xPosition){
-			if (currY > yPosition){
-				smallerVal = yPosition;
-				largerVal = currY;
-			}
-			else if (yPosition > currY){
-				smallerVal = currY;
-				largerVal = yPosition;
-			}
-			else return false;
-			
-			// Loop to determine if any piece is between
-			// target location and this piece.
-			smallerVal++;
-			for(; smallerVal < largerVal; smallerVal++){
-				if (chessBoard.pieceAt(currX, smallerVal) != null){
-					return false;
-				}
-			}
-			return true;
-		}
-		
-		// Fixed Y Position
-		if (currY == yPosition){
-			if (currX > xPosition){
-				smallerVal = xPosition;
-				largerVal = currX;
-			}
-			else if (xPosition > currX){
-				smallerVal = currX;
-				largerVal = xPosition;
-			}
-			else return false;
-			
-			// Loop to determine if any piece is between
-			// target location and this piece.
-			smallerVal++;
-			for(; smallerVal < largerVal; smallerVal++){
-				if (chessBoard.pieceAt(smallerVal, currY) != null){
-					return false;
-				}
-			}
-			return true;
-		}
+		if (chessBoard.isStandard())
+			return chessBoard.isInBounds(xPosition, yPosition)
+					&& (Magic.rookAttacks(chessBoard.squareIndex(currX, currY), occupiedSquares())
+							& (1L << chessBoard.squareIndex(xPosition, yPosition))) != 0;
 		
-		return false;
+		// Determine if any piece is between
+		// target location and this piece.
+		return chessBoard.isPathClear(currX, currY, xPosition, yPosition);
 	}
 
 	/**
@@ -198,52 +400,22 @@ public class Piece {
 	 * move in a diagonal line.
 	 * @param xPosition The specified x location
 	 * @param yPosition The specified y location
-	 * @return
+	 * @return true if the line is diagonal and nothing is in between
 	 */
 	protected boolean isMovingDiagonal(int xPosition, int yPosition) {
-		int xStart = 0;
-		int yStart = 0;
-		int xFinish = 1;
-		//int yFinish = 1;
-		
 		//Check if movement is diagonal
 		int xTotal = Math.abs(xPosition - this.getXLocation());
 		int yTotal = Math.abs(yPosition - this.getYLocation());
 		
-		if (xTotal == yTotal){
-			if (xPosition < this.getXLocation()){
-				xStart = xPosition;
-				xFinish = this.getXLocation();
-			}
-			else if (xPosition > this.getXLocation()){
-				xStart = this.getXLocation();
-				xFinish = xPosition;
-			}
-			else
-				return false;
+		if (xTotal == yTotal && xTotal != 0 && onBoard()){
+			if (chessBoard.isStandard())
+				return chessBoard.isInBounds(xPosition, yPosition)
+						&& (Magic.bishopAttacks(chessBoard.squareIndex(xLocation, yLocation), occupiedSquares())
+								& (1L << chessBoard.squareIndex(xPosition, yPosition))) != 0;
 			
-			if (yPosition < this.getYLocation()){
-				yStart = yPosition;
-				//yFinish = this.getYLocation();
-			}
-			else if (yPosition > this.getYLocation()){
-				yStart = this.getYLocation();
-				//yFinish = yPosition;
-			}
-			else
-				return false;
-			
-			xStart++;
-			yStart++;
-			
-			// Loop to see if any piece is in between
-			for(;xStart < xFinish; xStart++, yStart++){
-				if (chessBoard.pieceAt(xStart, yStart) != null){
-					return false;
-				}
-			}
-			
-			return true;
+			// Determine if any piece is in between
+			return chessBoard.isPathClear(this.getXLocation(), this.getYLocation(),
+					xPosition, yPosition);
 		}
 		
 		return false;
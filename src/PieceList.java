@@ -0,0 +1,94 @@
+
+/**
+ * The pieces of one color that stand on a board, kept in a plain array
+ * so that walking them touches contiguous memory.
+ *
+ * The Board adds a piece whenever one is placed on a spot and removes it
+ * whenever its spot is emptied or taken, so captured pieces drop out of
+ * the list on their own. A map from square to slot makes removal O(1):
+ * the last piece in the list is moved into the freed slot. Because of
+ * that, the order of the pieces changes as they move.
+ */
+public class PieceList {
+	// A side starts with 16 pieces and, without promotion, never gains any
+	public static final int DEFAULT_CAPACITY = 16;
+	
+	private Piece[] pieces;
+	private int[] squares;
+	private int[] slotBySquare;
+	private int size;
+	
+	/**
+	 * @param squareCount - number of squares on the board
+	 */
+	public PieceList(int squareCount){
+		pieces = new Piece[DEFAULT_CAPACITY];
+		squares = new int[DEFAULT_CAPACITY];
+		slotBySquare = new int[squareCount];
+		java.util.Arrays.fill(slotBySquare, -1);
+		size = 0;
+	}
+	
+	/**
+	 * Adds a piece standing on a square.
+	 *
+	 * ASSERT that no piece of this list is on the square.
+	 * @param piece - the piece
+	 * @param square - square number on the board
+	 */
+	public void add(Piece piece, int square){
+		// Only armies set up by hand on variant boards need more room
+		if (size == pieces.length){
+			pieces = java.util.Arrays.copyOf(pieces, 2 * size);
+			squares = java.util.Arrays.copyOf(squares, 2 * size);
+		}
+		pieces[size] = piece;
+		squares[size] = square;
+		slotBySquare[square] = size;
+		size++;
+	}
+	
+	/**
+	 * Removes the piece standing on a square, filling its slot
+	 * with the last piece of the list.
+	 *
+	 * ASSERT that a piece of this list is on the square.
+	 * @param square - square number on the board
+	 */
+	public void remove(int square){
+		int slot = slotBySquare[square];
+		size--;
+		
+		if (slot != size){
+			pieces[slot] = pieces[size];
+			squares[slot] = squares[size];
+			slotBySquare[squares[slot]] = slot;
+		}
+		pieces[size] = null;
+		slotBySquare[square] = -1;
+	}
+	
+	public int size(){
+		return size;
+	}
+	
+	public Piece get(int slot){
+		return pieces[slot];
+	}
+	
+	/**
+	 * Square number of the piece in a slot.
+	 */
+	public int getSquare(int slot){
+		return squares[slot];
+	}
+	
+	/**
+	 * Finds the slot of the piece on a square.
+	 * @param square - square number on the board
+	 * @return the slot, or -1 if no piece of this list is there
+	 */
+	public int indexOf(int square){
+		return slotBySquare[square];
+	}
+}
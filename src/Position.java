@@ -0,0 +1,148 @@
+
+/**
+ * An immutable snapshot of a position: the pieces on each square, which
+ * of them have moved, and the player to move.
+ *
+ * Each square takes four bits (0 for empty, otherwise 1 + color * 7 +
+ * piece type), so a board of up to 64 squares packs into four longs,
+ * with one more long of moved flags. A snapshot is about 60 bytes,
+ * holds no references to pieces or boards, and can be handed to other
+ * threads or kept in caches freely. Game.getPosition makes one and
+ * Game.setPosition plays it back onto a game's board.
+ */
+public final class Position {
+	public static final int EMPTY = 0;
+	public static final int MAX_SQUARES = 64;
+	
+	private static final int SQUARES_PER_WORD = 16;
+	private static final long NIBBLE_MASK = 0xFL;
+	
+	private final long placement0;
+	private final long placement1;
+	private final long placement2;
+	private final long placement3;
+	private final long moved;
+	private final byte xDimension;
+	private final byte yDimension;
+	private final byte player;
+	
+	private Position(long[] placement, long moved, int xDimension, int yDimension, int player){
+		this.placement0 = placement[0];
+		this.placement1 = placement[1];
+		this.placement2 = placement[2];
+		this.placement3 = placement[3];
+		this.moved = moved;
+		this.xDimension = (byte) xDimension;
+		this.yDimension = (byte) yDimension;
+		this.player = (byte) player;
+	}
+	
+	/**
+	 * Takes a snapshot of the pieces on a board.
+	 *
+	 * @param board - the board, of at most 64 squares
+	 * @param player - the player to move
+	 * @return - the snapshot
+	 */
+	public static Position of(Board board, int player){
+		int xDimension = board.getXDimension();
+		int yDimension = board.getYDimension();
+		if (xDimension * yDimension > MAX_SQUARES)
+			throw new IllegalArgumentException("Board too large for a snapshot: "
+					+ xDimension + "x" + yDimension);
+		
+		long[] placement = new long[MAX_SQUARES / SQUARES_PER_WORD];
+		long moved = 0;
+		for (int x = 0; x < xDimension; x++){
+			for (int y = 0; y < yDimension; y++){
+				Piece piece = board.pieceAt(x, y);
+				if (piece == null)
+					continue;
+				
+				int square = x * yDimension + y;
+				long code = 1 + piece.getColor() * Piece.PIECE_TYPES + piece.getPieceType();
+				placement[square / SQUARES_PER_WORD] |= code << shift(square);
+				if (piece.hasMoved())
+					moved |= 1L << square;
+			}
+		}
+		return new Position(placement, moved, xDimension, yDimension, player);
+	}
+	
+	/**
+	 * Returns the packed piece on a square.
+	 * @param square - square number, x * getYDimension() + y
+	 * @return - EMPTY, or 1 + color * Piece.PIECE_TYPES + type
+	 */
+	public int getPieceCode(int square){
+		long word;
+		switch (square / SQUARES_PER_WORD){
+		case 0: word = placement0; break;
+		case 1: word = placement1; break;
+		case 2: word = placement2; break;
+		default: word = placement3; break;
+		}
+		return (int) ((word >>> shift(square)) & NIBBLE_MASK);
+	}
+	
+	/**
+	 * Returns the type of the piece at a location.
+	 * @return - one of the type constants in Piece, or -1 if empty
+	 */
+	public int getPieceType(int xPosition, int yPosition){
+		int code = getPieceCode(xPosition * yDimension + yPosition);
+		return (code == EMPTY) ? -1 : (code - 1) % Piece.PIECE_TYPES;
+	}
+	
+	/**
+	 * Returns the color of the piece at a location.
+	 * @return - Piece.BLACK or Piece.WHITE, or -1 if empty
+	 */
+	public int getColor(int xPosition, int yPosition){
+		int code = getPieceCode(xPosition * yDimension + yPosition);
+		return (code == EMPTY) ? -1 : (code - 1) / Piece.PIECE_TYPES;
+	}
+	
+	public boolean hasMoved(int xPosition, int yPosition){
+		return (moved & (1L << (xPosition * yDimension + yPosition))) != 0;
+	}
+	
+	public int getPlayerTurn(){
+		return player;
+	}
+	
+	public int getXDimension(){
+		return xDimension;
+	}
+	
+	public int getYDimension(){
+		return yDimension;
+	}
+	
+	@Override
+	public boolean equals(Object other){
+		if (!(other instanceof Position))
+			return false;
+		
+		Position position = (Position) other;
+		return placement0 == position.placement0 && placement1 == position.placement1
+				&& placement2 == position.placement2 && placement3 == position.placement3
+				&& moved == position.moved && player == position.player
+				&& xDimension == position.xDimension && yDimension == position.yDimension;
+	}
+	
+	@Override
+	public int hashCode(){
+		long hash = placement0;
+		hash = hash * 31 + placement1;
+		hash = hash * 31 + placement2;
+		hash = hash * 31 + placement3;
+		hash = hash * 31 + moved;
+		hash = hash * 31 + ((xDimension << 16) | (yDimension << 8) | player);
+		return (int) (hash ^ (hash >>> 32));
+	}
+	
+	private static int shift(int square){
+		return (square % SQUARES_PER_WORD) * 4;
+	}
+}
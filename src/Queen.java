@@ -4,6 +4,32 @@ public class Queen extends Piece{
 		super(board, color, xLoc, yLoc);
 	}
 	
+	public int getPieceType(){
+		return QUEEN;
+	}
+	
+	public int generateMoves(int[] moves, int count){
+		if (chessBoard.isStandard() && onBoard())
+			return addTargetMoves(Magic.queenAttacks(chessBoard.squareIndex(getXLocation(), getYLocation()),
+					occupiedSquares()), moves, count);
+		count = generateRayMoves(STRAIGHT_X, STRAIGHT_Y, moves, count);
+		return generateRayMoves(DIAGONAL_X, DIAGONAL_Y, moves, count);
+	}
+	
+	public void markAttacks(int xPosition, int yPosition, int delta){
+		if (chessBoard.isStandard()){
+			chessBoard.addAttacks(getColor(), Magic.queenAttacks(chessBoard.squareIndex(xPosition, yPosition),
+					occupiedSquares()), delta);
+			return;
+		}
+		markRayAttacks(xPosition, yPosition, STRAIGHT_X, STRAIGHT_Y, delta);
+		markRayAttacks(xPosition, yPosition, DIAGONAL_X, DIAGONAL_Y, delta);
+	}
+	
+	public boolean slidesAlong(int xStep, int yStep){
+		return true;
+	}
+	
 	public boolean canMoveTo(int xPosition, int yPosition){
 		if(canMoveGenerics(xPosition,yPosition)){
 			return queenMovement(xPosition, yPosition);
@@ -4,6 +4,29 @@ public class Rook extends Piece{
 		super(board, color, xLoc, yLoc);
 	}
 	
+	public int getPieceType(){
+		return ROOK;
+	}
+	
+	public int generateMoves(int[] moves, int count){
+		if (chessBoard.isStandard() && onBoard())
+			return addTargetMoves(Magic.rookAttacks(chessBoard.squareIndex(getXLocation(), getYLocation()),
+					occupiedSquares()), moves, count);
+		return generateRayMoves(STRAIGHT_X, STRAIGHT_Y, moves, count);
+	}
+	
+	public void markAttacks(int xPosition, int yPosition, int delta){
+		if (chessBoard.isStandard())
+			chessBoard.addAttacks(getColor(), Magic.rookAttacks(chessBoard.squareIndex(xPosition, yPosition),
+					occupiedSquares()), delta);
+		else
+			markRayAttacks(xPosition, yPosition, STRAIGHT_X, STRAIGHT_Y, delta);
+	}
+	
+	public boolean slidesAlong(int xStep, int yStep){
+		return xStep == 0 || yStep == 0;
+	}
+	
 	public boolean canMoveTo(int xPosition, int yPosition){
 		if(canMoveGenerics(xPosition,yPosition)){
 			return rookMovement(xPosition, yPosition);
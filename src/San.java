@@ -0,0 +1,90 @@
+
+/**
+ * Reads moves written in standard algebraic notation (SAN), such as
+ * "e4", "Nbd7", "exd5" or "Qh4+", against the position of a game.
+ *
+ * Castling, promotion and en passant are not part of the rules here,
+ * so moves written with them never match a move.
+ */
+public class San {
+	// SAN letters by piece type, pawns have none
+	private static final String PIECE_LETTERS = " NBRQK";
+	
+	private San(){
+	}
+	
+	/**
+	 * Finds the legal move of the player to move that a SAN move
+	 * names. Check, mate and annotation marks at the end are ignored.
+	 * @param game - the game whose position the move is played in
+	 * @param san - the move text
+	 * @param moves - scratch buffer, at least Game.MAX_MOVES long
+	 * @return - the packed move, or Move.NONE if no legal move
+	 * matches, or more than one does
+	 */
+	public static int parse(Game game, CharSequence san, int[] moves){
+		Board board = game.getBoard();
+		int end = san.length();
+		while (end > 0 && isSuffix(san.charAt(end - 1))){
+			end--;
+		}
+		if (end < 2)
+			return Move.NONE;
+		
+		int type = PIECE_LETTERS.indexOf(san.charAt(0));
+		int start = (type > 0) ? 1 : 0;
+		if (type <= 0)
+			type = Piece.PAWN;
+		
+		int toY = san.charAt(end - 2) - 'a';
+		int toX = board.getXDimension() - (san.charAt(end - 1) - '0');
+		if (!board.isInBounds(toX, toY))
+			return Move.NONE;
+		
+		// Whatever stands between the piece letter and the target
+		// square narrows down where the piece comes from
+		int fromX = -1;
+		int fromY = -1;
+		boolean capture = false;
+		for (int i = start; i < end - 2; i++){
+			char c = san.charAt(i);
+			if (c == 'x')
+				capture = true;
+			else if (c >= 'a' && c < 'a' + board.getYDimension())
+				fromY = c - 'a';
+			else if (c >= '1' && c <= '9')
+				fromX = board.getXDimension() - (c - '0');
+			else
+				return Move.NONE;
+		}
+		if (type == Piece.PAWN && !capture)
+			fromY = toY;
+		
+		int player = game.getPlayerTurn();
+		int moveCount = game.generateMoves(player, moves);
+		int found = Move.NONE;
+		for (int i = 0; i < moveCount; i++){
+			int move = moves[i];
+			if (Move.toX(move) != toX || Move.toY(move) != toY
+					|| (fromX >= 0 && Move.fromX(move) != fromX)
+					|| (fromY >= 0 && Move.fromY(move) != fromY)
+					|| board.pieceAt(Move.fromX(move), Move.fromY(move)).getPieceType() != type)
+				continue;
+			
+			game.makeMove(move);
+			boolean legal = !game.isKingInCheck(player);
+			game.unmakeMove();
+			if (!legal)
+				continue;
+			
+			if (found != Move.NONE)
+				return Move.NONE;
+			found = move;
+		}
+		return found;
+	}
+	
+	private static boolean isSuffix(char c){
+		return c == '+' || c == '#' || c == '!' || c == '?';
+	}
+}
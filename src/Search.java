@@ -0,0 +1,491 @@
+
+/**
+ * Chooses a move for the player to move in a game.
+ *
+ * Negamax with alpha-beta pruning, run with iterative deepening until
+ * the depth, time or node budget runs out. Captures are tried first
+ * (most valuable victim, least valuable attacker), then killer moves,
+ * then quiet moves by their history score. Leaves are resolved by a
+ * capture-only quiescence search and scored by Evaluation. Results are
+ * shared across iterations through a transposition table.
+ */
+public class Search {
+	public static final int MATE_SCORE = 30000;
+	public static final int INFINITY = 32000;
+	// Scores beyond this are mates, counted in plies from the root
+	public static final int MATE_BOUND = MATE_SCORE - Game.MAX_PLY;
+	
+	private static final int TABLE_MOVE_ORDER = 1000000;
+	private static final int CAPTURE_ORDER = 100000;
+	private static final int FIRST_KILLER_ORDER = 90000;
+	private static final int SECOND_KILLER_ORDER = 80000;
+	private static final int HISTORY_LIMIT = 60000;
+	private static final int LIMIT_CHECK_INTERVAL = 1023;
+	
+	private Game game;
+	private Board board;
+	private TranspositionTable table;
+	private Evaluation evaluation;
+	private Tablebase tablebase;
+	private Listener listener;
+	
+	private int[][] moveBuffers;
+	private int[][] orderBuffers;
+	private int[][] killers;
+	private int[][] history;
+	private int[][] pvTable;
+	private int[] pvLength;
+	private int squareCount;
+	
+	private long nodes;
+	private long nodeLimit;
+	private long deadline;
+	// Asked for by stop; aborted once the search gives up on it
+	private volatile boolean stopped;
+	private boolean aborted;
+	private boolean helper;
+	private int firstDepth;
+	
+	private int bestMove;
+	private int bestScore;
+	private int completedDepth;
+	private int[] principalVariation;
+	
+	/**
+	 * Told about each iteration a search completes, for example
+	 * to report progress while it runs.
+	 */
+	public interface Listener {
+		/**
+		 * Called on the searching thread.
+		 * @param search - the search, for its node count
+		 * @param depth - depth of the iteration
+		 * @param score - its score, for the player to move
+		 * @param principalVariation - the moves expected, best first
+		 */
+		void iterationDone(Search search, int depth, int score, int[] principalVariation);
+	}
+	
+	public Search(Game game, TranspositionTable table){
+		this.game = game;
+		this.board = game.getBoard();
+		this.table = table;
+		this.evaluation = new Evaluation();
+		
+		squareCount = board.getXDimension() * board.getYDimension();
+		moveBuffers = new int[Game.MAX_PLY][];
+		orderBuffers = new int[Game.MAX_PLY][];
+		killers = new int[Game.MAX_PLY][2];
+		history = new int[2][squareCount * squareCount];
+		pvTable = new int[Game.MAX_PLY][];
+		pvLength = new int[Game.MAX_PLY];
+		principalVariation = new int[0];
+		helper = false;
+		firstDepth = 1;
+	}
+	
+	/**
+	 * Makes this search a helper of another search sharing the same
+	 * transposition table. Helpers leave ageing the table to the main
+	 * search, and may start deeper so that threads spread over depths.
+	 * As their results are not used, they obey stop and their budget
+	 * from the first node on.
+	 * @param firstDepth - depth of the first iteration
+	 */
+	public void setHelper(int firstDepth){
+		this.helper = true;
+		this.firstDepth = firstDepth;
+	}
+	
+	/**
+	 * Gives the search endgame tables. Positions they hold are scored
+	 * from the table instead of being searched, except at the root.
+	 * @param tablebase - the tables, or null for none
+	 */
+	public void setTablebase(Tablebase tablebase){
+		this.tablebase = tablebase;
+	}
+	
+	/**
+	 * @param listener - told about each completed iteration, or null
+	 */
+	public void setListener(Listener listener){
+		this.listener = listener;
+	}
+	
+	/**
+	 * Searches the current position of the game, deepening one ply
+	 * at a time until a limit is reached. The budget and stop are obeyed
+	 * once the first root move has been searched, so a move is found
+	 * whenever one exists: if no iteration completes, it is the best root
+	 * move of the first iteration searched so far.
+	 * @param maxDepth - deepest iteration to run
+	 * @param timeLimitMillis - time budget, 0 for none
+	 * @param maxNodes - node budget, 0 for none
+	 * @return - the best move found, Move.NONE if there are no legal moves
+	 */
+	public int search(int maxDepth, long timeLimitMillis, long maxNodes){
+		nodes = 0;
+		nodeLimit = maxNodes;
+		deadline = (timeLimitMillis > 0) ? System.currentTimeMillis() + timeLimitMillis : 0;
+		bestMove = Move.NONE;
+		bestScore = 0;
+		completedDepth = 0;
+		aborted = false;
+		principalVariation = new int[0];
+		if (!helper)
+			table.newSearch();
+		clearOrderingTables();
+		
+		for (int depth = firstDepth; depth <= maxDepth && depth < Game.MAX_PLY; depth++){
+			int score = negamax(depth, -INFINITY, INFINITY, 0);
+			if (aborted)
+				break;
+			
+			completedDepth = depth;
+			bestScore = score;
+			principalVariation = new int[pvLength[0]];
+			System.arraycopy(pvTable[0], 0, principalVariation, 0, pvLength[0]);
+			if (pvLength[0] > 0)
+				bestMove = principalVariation[0];
+			if (listener != null)
+				listener.iterationDone(this, depth, score, principalVariation);
+			
+			// No need to look further once a forced mate is found
+			if (Math.abs(score) > MATE_BOUND)
+				break;
+		}
+		
+		// Cleared at the end rather than the start, so that a stop
+		// sent just before the search started is not lost
+		stopped = false;
+		return bestMove;
+	}
+	
+	/**
+	 * Asks a running search to finish as soon as possible, which is
+	 * once its first root move has been searched. A search that has not
+	 * started yet stops after its first root move. Safe to call from
+	 * another thread.
+	 */
+	public void stop(){
+		stopped = true;
+	}
+	
+	private int negamax(int depth, int alpha, int beta, int ply){
+		pvLength[ply] = ply;
+		if (isOutOfBudget())
+			return 0;
+		// Draws by rule. One repetition is enough, as whoever
+		// repeated once could always do so again
+		if (ply > 0 && (game.isFiftyMoveDraw() || game.isRepetition()))
+			return 0;
+		if (tablebase != null && ply > 0){
+			int entry = tablebase.probe(game);
+			if (entry != Tablebase.NOT_FOUND){
+				nodes++;
+				return tablebaseScore(entry, ply);
+			}
+		}
+		if (depth <= 0)
+			return quiescence(alpha, beta, ply);
+		nodes++;
+		
+		int player = game.getPlayerTurn();
+		long key = game.getPositionKey();
+		int tableMove = Move.NONE;
+		
+		long data = table.probe(key);
+		if (data != 0){
+			tableMove = TranspositionTable.getMove(data);
+			if (ply > 0 && TranspositionTable.getDepth(data) >= depth){
+				int score = scoreFromTable(TranspositionTable.getScore(data), ply);
+				int bound = TranspositionTable.getBound(data);
+				if (bound == TranspositionTable.BOUND_EXACT
+						|| (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+						|| (bound == TranspositionTable.BOUND_UPPER && score <= alpha))
+					return score;
+			}
+		}
+		
+		int[] moves = buffer(moveBuffers, ply);
+		int[] order = buffer(orderBuffers, ply);
+		int moveCount = game.generateMoves(player, moves);
+		orderMoves(moves, order, moveCount, ply, tableMove);
+		
+		int originalAlpha = alpha;
+		int best = -INFINITY;
+		int bestMoveHere = Move.NONE;
+		int legalMoves = 0;
+		
+		for (int i = 0; i < moveCount; i++){
+			pickNext(moves, order, i, moveCount);
+			int move = moves[i];
+			boolean capture = board.pieceAt(Move.toX(move), Move.toY(move)) != null;
+			
+			game.makeMove(move);
+			if (game.isKingInCheck(player)){
+				game.unmakeMove();
+				continue;
+			}
+			legalMoves++;
+			int score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+			game.unmakeMove();
+			
+			if (aborted)
+				return 0;
+			
+			if (score > best){
+				best = score;
+				bestMoveHere = move;
+				// The answer should the first iteration not complete
+				if (ply == 0 && completedDepth == 0)
+					bestMove = move;
+				
+				if (score > alpha){
+					alpha = score;
+					updatePrincipalVariation(ply, move);
+					
+					if (alpha >= beta){
+						if (!capture)
+							rememberQuietCutoff(player, move, depth, ply);
+						break;
+					}
+				}
+			}
+		}
+		
+		if (legalMoves == 0)
+			return game.isKingInCheck(player) ? -MATE_SCORE + ply : 0;
+		
+		int bound;
+		if (best >= beta)
+			bound = TranspositionTable.BOUND_LOWER;
+		else if (best > originalAlpha)
+			bound = TranspositionTable.BOUND_EXACT;
+		else
+			bound = TranspositionTable.BOUND_UPPER;
+		table.store(key, bestMoveHere, scoreToTable(best, ply), Math.min(depth, 255), bound);
+		
+		return best;
+	}
+	
+	/**
+	 * Score of a tablebase entry, with mates counted from the root
+	 * like the ones found by searching.
+	 */
+	private static int tablebaseScore(int entry, int ply){
+		switch (Tablebase.getResult(entry)){
+		case Tablebase.WIN:
+			return MATE_SCORE - ply - Tablebase.getDistance(entry);
+		case Tablebase.LOSS:
+			return -MATE_SCORE + ply + Tablebase.getDistance(entry);
+		default:
+			return 0;
+		}
+	}
+	
+	/**
+	 * Plays out captures until the position is quiet, so that
+	 * leaves are not scored in the middle of an exchange.
+	 */
+	private int quiescence(int alpha, int beta, int ply){
+		pvLength[ply] = ply;
+		nodes++;
+		
+		int standPat = evaluation.evaluate(game);
+		if (standPat >= beta || ply >= Game.MAX_PLY - 1)
+			return standPat;
+		if (standPat > alpha)
+			alpha = standPat;
+		
+		int player = game.getPlayerTurn();
+		int[] moves = buffer(moveBuffers, ply);
+		int[] order = buffer(orderBuffers, ply);
+		int moveCount = game.generateMoves(player, moves);
+		
+		// Keep only the captures
+		int captureCount = 0;
+		for (int i = 0; i < moveCount; i++){
+			if (board.pieceAt(Move.toX(moves[i]), Move.toY(moves[i])) != null)
+				moves[captureCount++] = moves[i];
+		}
+		orderMoves(moves, order, captureCount, ply, Move.NONE);
+		
+		for (int i = 0; i < captureCount; i++){
+			pickNext(moves, order, i, captureCount);
+			
+			game.makeMove(moves[i]);
+			if (game.isKingInCheck(player)){
+				game.unmakeMove();
+				continue;
+			}
+			int score = -quiescence(-beta, -alpha, ply + 1);
+			game.unmakeMove();
+			
+			if (aborted)
+				return 0;
+			if (score >= beta)
+				return score;
+			if (score > alpha)
+				alpha = score;
+		}
+		return alpha;
+	}
+	
+	/**
+	 * Gives each move an ordering score: the table move first, then
+	 * captures by victim and attacker, then killers, then history.
+	 */
+	private void orderMoves(int[] moves, int[] order, int moveCount, int ply, int tableMove){
+		int player = game.getPlayerTurn();
+		
+		for (int i = 0; i < moveCount; i++){
+			int move = moves[i];
+			Piece victim = board.pieceAt(Move.toX(move), Move.toY(move));
+			
+			if (move == tableMove)
+				order[i] = TABLE_MOVE_ORDER;
+			else if (victim != null){
+				Piece attacker = board.pieceAt(Move.fromX(move), Move.fromY(move));
+				order[i] = CAPTURE_ORDER + 10 * Evaluation.pieceValue(victim.getPieceType())
+						- attacker.getPieceType();
+			}
+			else if (move == killers[ply][0])
+				order[i] = FIRST_KILLER_ORDER;
+			else if (move == killers[ply][1])
+				order[i] = SECOND_KILLER_ORDER;
+			else
+				order[i] = history[player][historyIndex(move)];
+		}
+	}
+	
+	/**
+	 * Moves the best ordered remaining move into slot i.
+	 */
+	private void pickNext(int[] moves, int[] order, int i, int moveCount){
+		int bestIndex = i;
+		for (int j = i + 1; j < moveCount; j++){
+			if (order[j] > order[bestIndex])
+				bestIndex = j;
+		}
+		if (bestIndex != i){
+			int move = moves[i];
+			moves[i] = moves[bestIndex];
+			moves[bestIndex] = move;
+			int value = order[i];
+			order[i] = order[bestIndex];
+			order[bestIndex] = value;
+		}
+	}
+	
+	private void rememberQuietCutoff(int player, int move, int depth, int ply){
+		if (killers[ply][0] != move){
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+		
+		int index = historyIndex(move);
+		history[player][index] += depth * depth;
+		if (history[player][index] > HISTORY_LIMIT){
+			// Age every entry so that history keeps below the killers
+			for (int color = 0; color < 2; color++){
+				for (int i = 0; i < history[color].length; i++){
+					history[color][i] >>= 1;
+				}
+			}
+		}
+	}
+	
+	private int historyIndex(int move){
+		int from = board.squareIndex(Move.fromX(move), Move.fromY(move));
+		int to = board.squareIndex(Move.toX(move), Move.toY(move));
+		return from * squareCount + to;
+	}
+	
+	private void updatePrincipalVariation(int ply, int move){
+		int[] line = buffer(pvTable, ply);
+		line[ply] = move;
+		int childLength = pvLength[ply + 1];
+		if (childLength > ply + 1)
+			System.arraycopy(pvTable[ply + 1], ply + 1, line, ply + 1, childLength - ply - 1);
+		pvLength[ply] = Math.max(childLength, ply + 1);
+	}
+	
+	private boolean isOutOfBudget(){
+		// The main search always finishes its first root move
+		if (aborted || (bestMove == Move.NONE && !helper))
+			return aborted;
+		
+		if (stopped)
+			aborted = true;
+		else if ((nodes & LIMIT_CHECK_INTERVAL) == 0){
+			if ((nodeLimit > 0 && nodes >= nodeLimit)
+					|| (deadline > 0 && System.currentTimeMillis() >= deadline))
+				aborted = true;
+		}
+		return aborted;
+	}
+	
+	private void clearOrderingTables(){
+		for (int ply = 0; ply < killers.length; ply++){
+			killers[ply][0] = Move.NONE;
+			killers[ply][1] = Move.NONE;
+		}
+		for (int color = 0; color < 2; color++){
+			java.util.Arrays.fill(history[color], 0);
+		}
+	}
+	
+	private static int[] buffer(int[][] buffers, int ply){
+		if (buffers[ply] == null)
+			buffers[ply] = new int[Math.max(Game.MAX_MOVES, Game.MAX_PLY)];
+		return buffers[ply];
+	}
+	
+	/**
+	 * Mate scores are stored relative to the position rather than
+	 * the root, so they stay right when found again at another ply.
+	 */
+	private static int scoreToTable(int score, int ply){
+		if (score > MATE_BOUND) return score + ply;
+		if (score < -MATE_BOUND) return score - ply;
+		return score;
+	}
+	
+	private static int scoreFromTable(int score, int ply){
+		if (score > MATE_BOUND) return score - ply;
+		if (score < -MATE_BOUND) return score + ply;
+		return score;
+	}
+	
+	// Getters below
+	
+	public int getBestMove(){
+		return bestMove;
+	}
+	
+	/**
+	 * Score of the best move from the view of the player to move,
+	 * in centipawns, or beyond MATE_BOUND for a forced mate.
+	 */
+	public int getBestScore(){
+		return bestScore;
+	}
+	
+	public int[] getPrincipalVariation(){
+		return principalVariation.clone();
+	}
+	
+	public int getCompletedDepth(){
+		return completedDepth;
+	}
+	
+	public long getNodes(){
+		return nodes;
+	}
+	
+	public Evaluation getEvaluation(){
+		return evaluation;
+	}
+}
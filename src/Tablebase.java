@@ -0,0 +1,239 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Endgame tablebases for two kings and up to two other pieces on an 8x8
+ * board, read straight from a memory-mapped file written by
+ * TablebaseGenerator.
+ *
+ * A table covers one set of pieces and holds a byte for every placement
+ * of them with either player to move, so a probe is a single read at an
+ * index worked out from the squares:
+ *
+ *   player (1 bit)  white king  black king  other pieces (6 bits each)
+ *
+ * The other pieces come in the order of their codes (color * 8 + type),
+ * highest first. A byte is 0 for a draw, an odd number n for a win in
+ * n plies, an even number n for a loss in n - 2 plies (2 is checkmate),
+ * and 255 for a placement that cannot arise because the player not to
+ * move is in check. Positions with the colors reversed are looked up in
+ * the table of the mirrored position.
+ *
+ * The file starts with a magic number and the table count, then an
+ * entry for each table, its material key (4 bytes) and offset (8 bytes),
+ * then the tables themselves. Probes only read the tables, so threads
+ * may share a Tablebase.
+ */
+public class Tablebase implements Closeable {
+	public static final int MAGIC = 0x43544231;
+	public static final int NOT_FOUND = -1;
+	public static final int DRAW = 0;
+	public static final int WIN = 1;
+	public static final int LOSS = 2;
+	public static final int MAX_PIECES = 4;
+	
+	static final int ILLEGAL = 255;
+	static final int HEADER_BYTES = 4 + 4;
+	static final int ENTRY_BYTES = 4 + 8;
+	// Material keys hold the codes of up to two pieces, one plus the code in each nibble
+	static final int MATERIAL_KEYS = 256;
+	
+	private FileChannel channel;
+	private MappedByteBuffer[] tables;
+	private int tableCount;
+	
+	public Tablebase(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		tables = new MappedByteBuffer[MATERIAL_KEYS];
+		
+		ByteBuffer header = read(0, HEADER_BYTES);
+		if (header.getInt() != MAGIC)
+			throw new IOException("Not a tablebase file: " + path);
+		tableCount = header.getInt();
+		if (tableCount < 0 || tableCount > MATERIAL_KEYS)
+			throw new IOException("Damaged tablebase file: " + path);
+		
+		ByteBuffer entries = read(HEADER_BYTES, tableCount * ENTRY_BYTES);
+		for (int i = 0; i < tableCount; i++){
+			int key = entries.getInt();
+			long offset = entries.getLong();
+			if (key < 0 || key >= MATERIAL_KEYS || offset + tableSize(key) > channel.size())
+				throw new IOException("Damaged tablebase file: " + path);
+			tables[key] = channel.map(FileChannel.MapMode.READ_ONLY, offset, tableSize(key));
+		}
+	}
+	
+	/**
+	 * Looks up the current position of a game.
+	 * @param game - the game
+	 * @return - the entry for the position, read with getResult and
+	 * getDistance, or NOT_FOUND if no table holds it
+	 */
+	public int probe(Game game){
+		Board board = game.getBoard();
+		if (board.getXDimension() != 8 || board.getYDimension() != 8
+				|| board.getPieceList(Piece.WHITE).size() + board.getPieceList(Piece.BLACK).size() > MAX_PIECES)
+			return NOT_FOUND;
+		
+		int whiteKing = -1;
+		int blackKing = -1;
+		int firstCode = -1;
+		int firstSquare = 0;
+		int secondCode = -1;
+		int secondSquare = 0;
+		
+		for (int color = Piece.BLACK; color <= Piece.WHITE; color++){
+			PieceList pieces = board.getPieceList(color);
+			for (int i = 0; i < pieces.size(); i++){
+				Piece piece = pieces.get(i);
+				int square = square(piece.getXLocation(), piece.getYLocation());
+				int type = piece.getPieceType();
+				
+				if (type == Piece.KING){
+					if (color == Piece.WHITE)
+						whiteKing = square;
+					else
+						blackKing = square;
+				}
+				else if (type == Piece.GENERIC || !isTablePawn(piece))
+					return NOT_FOUND;
+				else if (pieceCode(color, type) > firstCode){
+					secondCode = firstCode;
+					secondSquare = firstSquare;
+					firstCode = pieceCode(color, type);
+					firstSquare = square;
+				}
+				else {
+					secondCode = pieceCode(color, type);
+					secondSquare = square;
+				}
+			}
+		}
+		if (whiteKing < 0 || blackKing < 0)
+			return NOT_FOUND;
+		
+		int player = game.getPlayerTurn();
+		int entry = lookup(player, whiteKing, blackKing, firstCode, firstSquare, secondCode, secondSquare);
+		if (entry == NOT_FOUND){
+			// The same position with the colors reversed and the board turned over
+			int first = flipColor(firstCode);
+			int second = flipColor(secondCode);
+			if (second > first)
+				entry = lookup(1 - player, blackKing ^ 56, whiteKing ^ 56,
+						second, secondSquare ^ 56, first, firstSquare ^ 56);
+			else
+				entry = lookup(1 - player, blackKing ^ 56, whiteKing ^ 56,
+						first, firstSquare ^ 56, second, secondSquare ^ 56);
+		}
+		return (entry == ILLEGAL) ? NOT_FOUND : entry;
+	}
+	
+	/**
+	 * Outcome of a probed position for the player to move.
+	 * @param entry - the entry returned by probe
+	 * @return - WIN, DRAW or LOSS
+	 */
+	public static int getResult(int entry){
+		if (entry == 0)
+			return DRAW;
+		return ((entry & 1) != 0) ? WIN : LOSS;
+	}
+	
+	/**
+	 * Plies until mate with best play, the mate included.
+	 * @param entry - the entry returned by probe
+	 * @return - the distance, 0 when checkmated already, -1 for draws
+	 */
+	public static int getDistance(int entry){
+		if (entry == 0)
+			return -1;
+		return ((entry & 1) != 0) ? entry : entry - 2;
+	}
+	
+	public int getTableCount(){
+		return tableCount;
+	}
+	
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	private int lookup(int player, int whiteKing, int blackKing,
+			int firstCode, int firstSquare, int secondCode, int secondSquare){
+		int key = 0;
+		int index = (((player << 6) | whiteKing) << 6) | blackKing;
+		if (firstCode >= 0){
+			key = firstCode + 1;
+			index = (index << 6) | firstSquare;
+		}
+		if (secondCode >= 0){
+			key = (key << 4) | (secondCode + 1);
+			index = (index << 6) | secondSquare;
+		}
+		
+		if (tables[key] == null)
+			return NOT_FOUND;
+		return tables[key].get(index) & 0xFF;
+	}
+	
+	/**
+	 * Tables hold pawns on the squares they can reach in a game,
+	 * not on their own back row, and able to advance two squares
+	 * exactly when on their starting row.
+	 */
+	private static boolean isTablePawn(Piece piece){
+		if (piece.getPieceType() != Piece.PAWN)
+			return true;
+		int row = piece.getXLocation();
+		return row != backRow(piece.getColor())
+				&& piece.hasMoved() == (row != startRow(piece.getColor()));
+	}
+	
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()){
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new IOException("Truncated tablebase file");
+		}
+		buffer.flip();
+		return buffer;
+	}
+	
+	static int square(int xPosition, int yPosition){
+		return xPosition * 8 + yPosition;
+	}
+	
+	static int pieceCode(int color, int type){
+		return color * 8 + type;
+	}
+	
+	static int startRow(int color){
+		return (color == Piece.WHITE) ? 6 : 1;
+	}
+	
+	static int backRow(int color){
+		return (color == Piece.WHITE) ? 7 : 0;
+	}
+	
+	private static int flipColor(int code){
+		return (code < 0) ? code : code ^ 8;
+	}
+	
+	/**
+	 * Number of pieces, kings included, in the table of a material key.
+	 */
+	static int pieceCount(int key){
+		if (key == 0)
+			return 2;
+		return (key < 16) ? 3 : 4;
+	}
+	
+	static long tableSize(int key){
+		return 2L << (6 * pieceCount(key));
+	}
+}
@@ -0,0 +1,529 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds endgame tablebases by retrograde analysis and writes them to
+ * a file read by Tablebase.
+ *
+ * Generating a table first marks the placements where the player not
+ * to move is in check, which cannot arise, and counts the moves of
+ * every other position. Captures leave the table, so their outcomes are
+ * read from the smaller table they lead into, which is generated first.
+ * Then, one ply at a time, outcomes are passed back to the positions a
+ * move earlier: a position with a move into a loss is a win, and one
+ * whose every move leads into a win is a loss. Whatever is left is a
+ * draw. Moves follow the rules of the piece classes: no castling, en
+ * passant or promotion, and pawns advance two squares from their
+ * starting row.
+ *
+ * A four piece table takes 32 MB and generating it needs three times
+ * that in working space.
+ */
+public class TablebaseGenerator {
+	// Longest distance to mate that fits the one byte entries
+	public static final int MAX_DISTANCE = 250;
+	
+	private static final int SQUARES = 64;
+	// Outcome of the best capture when it is a draw; 0 stands for no capture
+	private static final int CAPTURE_DRAW = 254;
+	private static final int[] KING_X = {1, 1, 1, 0, 0, -1, -1, -1};
+	private static final int[] KING_Y = {1, 0, -1, 1, -1, 1, 0, -1};
+	private static final int[] KNIGHT_X = {2, 2, -2, -2, 1, 1, -1, -1};
+	private static final int[] KNIGHT_Y = {1, -1, 1, -1, 2, -2, 2, -2};
+	
+	// Generated tables by material key, smaller tables first
+	private Map<Integer, byte[]> tables;
+	
+	public TablebaseGenerator(){
+		tables = new LinkedHashMap<Integer, byte[]>();
+	}
+	
+	/**
+	 * Generates the table of a set of pieces, and any smaller tables
+	 * its captures lead into.
+	 * @param material - the pieces, white's then black's, each side
+	 * starting with its king, for example "KQvK" or "KRvKN"
+	 * @throws IllegalArgumentException if the pieces are not two kings
+	 * and at most two pieces of the standard types
+	 */
+	public void generate(String material){
+		int split = material.toUpperCase().indexOf('V');
+		if (split < 1 || split + 1 >= material.length() || material.length() - 3 > Tablebase.MAX_PIECES - 2
+				|| material.charAt(0) != 'K' || material.charAt(split + 1) != 'K')
+			throw new IllegalArgumentException("Not a tablebase material: " + material);
+		
+		int[] extras = new int[material.length() - 3];
+		int count = 0;
+		for (int i = 1; i < material.length(); i++){
+			if (i == split || i == split + 1)
+				continue;
+			int type = Game.PIECE_SYMBOLS.indexOf(Character.toLowerCase(material.charAt(i)));
+			if (type < Piece.PAWN || type >= Piece.KING)
+				throw new IllegalArgumentException("Not a tablebase material: " + material);
+			extras[count++] = Tablebase.pieceCode((i < split) ? Piece.WHITE : Piece.BLACK, type);
+		}
+		java.util.Arrays.sort(extras);
+		for (int i = 0; i < count / 2; i++){
+			int swap = extras[i];
+			extras[i] = extras[count - 1 - i];
+			extras[count - 1 - i] = swap;
+		}
+		table(extras);
+	}
+	
+	/**
+	 * Writes every table generated so far.
+	 * @param path - the file to write
+	 * @return - the number of tables written
+	 * @throws IOException if the file cannot be written
+	 */
+	public int write(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_BYTES
+					+ tables.size() * Tablebase.ENTRY_BYTES);
+			header.putInt(Tablebase.MAGIC).putInt(tables.size());
+			long offset = header.capacity();
+			for (Map.Entry<Integer, byte[]> table : tables.entrySet()){
+				header.putInt(table.getKey()).putLong(offset);
+				offset += table.getValue().length;
+			}
+			header.flip();
+			writeFully(channel, header);
+			
+			for (byte[] table : tables.values()){
+				writeFully(channel, ByteBuffer.wrap(table));
+			}
+		} finally {
+			channel.close();
+		}
+		return tables.size();
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+	}
+	
+	/**
+	 * Returns the table of the kings and the given pieces, generating
+	 * it if needed.
+	 * @param extras - codes of the pieces other than the kings, highest first
+	 */
+	private byte[] table(int[] extras){
+		int key = 0;
+		for (int code : extras){
+			key = (key << 4) | (code + 1);
+		}
+		byte[] values = tables.get(key);
+		if (values == null){
+			values = new Generation(extras).run();
+			tables.put(key, values);
+		}
+		return values;
+	}
+	
+	/**
+	 * The working state of generating one table. Pieces are numbered
+	 * in index order: the white king, the black king, then the others.
+	 */
+	private class Generation {
+		private int pieceCount;
+		private int[] codes;
+		private int size;
+		private byte[] values;
+		// Moves that stay in the table and have no outcome yet
+		private byte[] counts;
+		// Best outcome among the captures, for the player making them
+		private byte[] captures;
+		// Tables the captures lead into, by the piece captured
+		private byte[][] captureTables;
+		
+		private int[] squares;
+		private int[] targets;
+		
+		Generation(int[] extras){
+			pieceCount = extras.length + 2;
+			codes = new int[pieceCount];
+			codes[0] = Tablebase.pieceCode(Piece.WHITE, Piece.KING);
+			codes[1] = Tablebase.pieceCode(Piece.BLACK, Piece.KING);
+			System.arraycopy(extras, 0, codes, 2, extras.length);
+			
+			captureTables = new byte[pieceCount][];
+			for (int i = 0; i < extras.length; i++){
+				int[] rest = new int[extras.length - 1];
+				for (int j = 0, k = 0; j < extras.length; j++){
+					if (j != i)
+						rest[k++] = extras[j];
+				}
+				captureTables[i + 2] = table(rest);
+			}
+			
+			size = 2 << (6 * pieceCount);
+			values = new byte[size];
+			counts = new byte[size];
+			captures = new byte[size];
+			squares = new int[pieceCount];
+			targets = new int[32];
+		}
+		
+		byte[] run(){
+			markIllegal();
+			int lastCapture = countMoves();
+			
+			for (int ply = 0; ply <= MAX_DISTANCE; ply++){
+				int entry = (ply % 2 == 1) ? ply : ply + 2;
+				boolean found = false;
+				
+				for (int index = 0; index < size; index++){
+					int value = values[index] & 0xFF;
+					// A capture decides the position now
+					if (value == 0 && (captures[index] & 0xFF) == entry
+							&& (ply % 2 == 1 || counts[index] == 0)){
+						values[index] = (byte) entry;
+						value = entry;
+					}
+					if (value == entry){
+						found = true;
+						passBack(index, ply);
+					}
+				}
+				if (!found && ply >= lastCapture)
+					return values;
+			}
+			throw new IllegalStateException("Mate takes more than " + MAX_DISTANCE + " plies");
+		}
+		
+		private void markIllegal(){
+			for (int index = 0; index < size; index++){
+				long occupied = decode(index);
+				if (Long.bitCount(occupied) != pieceCount || isInCheck(1 - player(index), occupied)
+						|| hasPawnOnBackRow())
+					values[index] = (byte) Tablebase.ILLEGAL;
+			}
+		}
+		
+		/**
+		 * Counts the moves of every position, settles checkmates and
+		 * notes the best capture.
+		 * @return - the longest distance to mate reached by a capture
+		 */
+		private int countMoves(){
+			int lastCapture = 0;
+			for (int index = 0; index < size; index++){
+				if ((values[index] & 0xFF) == Tablebase.ILLEGAL)
+					continue;
+				long occupied = decode(index);
+				int player = player(index);
+				int moves = 0;
+				int quietMoves = 0;
+				int best = 0;
+				
+				for (int piece = 0; piece < pieceCount; piece++){
+					if (color(piece) != player)
+						continue;
+					int from = squares[piece];
+					int targetCount = moveTargets(codes[piece], from, occupied);
+					
+					for (int i = 0; i < targetCount; i++){
+						int to = targets[i];
+						int captured = pieceAt(to);
+						if (captured >= 0 && color(captured) == player)
+							continue;
+						
+						squares[piece] = to;
+						if (captured < 0){
+							int child = encode(1 - player, -1);
+							if ((values[child] & 0xFF) != Tablebase.ILLEGAL){
+								moves++;
+								quietMoves++;
+							}
+						}
+						else {
+							int outcome = captureTables[captured][encode(1 - player, captured)] & 0xFF;
+							if (outcome != Tablebase.ILLEGAL){
+								moves++;
+								best = better(best, reply(outcome));
+							}
+						}
+						squares[piece] = from;
+					}
+				}
+				
+				counts[index] = (byte) quietMoves;
+				captures[index] = (byte) best;
+				if (best != 0 && best != CAPTURE_DRAW)
+					lastCapture = Math.max(lastCapture, Tablebase.getDistance(best));
+				if (moves == 0 && isInCheck(player, occupied))
+					values[index] = 2;
+			}
+			return lastCapture;
+		}
+		
+		/**
+		 * Passes the outcome of a position, reached at the given
+		 * distance, back to the positions one move earlier.
+		 */
+		private void passBack(int index, int ply){
+			long occupied = decode(index);
+			int mover = 1 - player(index);
+			boolean lost = (ply % 2 == 0);
+			
+			for (int piece = 0; piece < pieceCount; piece++){
+				if (color(piece) != mover)
+					continue;
+				int to = squares[piece];
+				int originCount = moveOrigins(codes[piece], to, occupied);
+				
+				for (int i = 0; i < originCount; i++){
+					squares[piece] = targets[i];
+					int parent = encode(mover, -1);
+					if (values[parent] != 0)
+						continue;
+					
+					if (lost)
+						values[parent] = (byte) (ply + 1);
+					else {
+						int left = (counts[parent] & 0xFF) - 1;
+						counts[parent] = (byte) left;
+						int capture = captures[parent] & 0xFF;
+						// Every move loses, unless a capture does better or loses later
+						if (left == 0 && (capture == 0 || (Tablebase.getResult(capture) == Tablebase.LOSS
+								&& Tablebase.getDistance(capture) <= ply + 1)))
+							values[parent] = (byte) (ply + 3);
+					}
+				}
+				squares[piece] = to;
+			}
+		}
+		
+		/**
+		 * Fills in the squares of a position.
+		 * @return - the occupied squares as a bit set
+		 */
+		private long decode(int index){
+			long occupied = 0;
+			for (int piece = pieceCount - 1; piece >= 0; piece--){
+				squares[piece] = index & (SQUARES - 1);
+				occupied |= 1L << squares[piece];
+				index >>>= 6;
+			}
+			return occupied;
+		}
+		
+		/**
+		 * Index of the current squares, leaving out one piece.
+		 * @param player - player to move
+		 * @param skipped - the piece left out, -1 for none
+		 */
+		private int encode(int player, int skipped){
+			int index = player;
+			for (int piece = 0; piece < pieceCount; piece++){
+				if (piece != skipped)
+					index = (index << 6) | squares[piece];
+			}
+			return index;
+		}
+		
+		private int player(int index){
+			return index >>> (6 * pieceCount);
+		}
+		
+		private int color(int piece){
+			return codes[piece] >> 3;
+		}
+		
+		private int pieceAt(int square){
+			for (int piece = 0; piece < pieceCount; piece++){
+				if (squares[piece] == square)
+					return piece;
+			}
+			return -1;
+		}
+		
+		private boolean hasPawnOnBackRow(){
+			for (int piece = 2; piece < pieceCount; piece++){
+				if ((codes[piece] & 7) == Piece.PAWN
+						&& squares[piece] / 8 == Tablebase.backRow(color(piece)))
+					return true;
+			}
+			return false;
+		}
+		
+		private boolean isInCheck(int color, long occupied){
+			int king = squares[(color == Piece.WHITE) ? 0 : 1];
+			for (int piece = 0; piece < pieceCount; piece++){
+				if (color(piece) != color && attacks(codes[piece], squares[piece], king, occupied))
+					return true;
+			}
+			return false;
+		}
+		
+		/**
+		 * Squares a piece moves to, empty or not. Pawns list the squares
+		 * ahead only when empty and the ones diagonally ahead only when not.
+		 * @return - the number of squares, in targets
+		 */
+		private int moveTargets(int code, int from, long occupied){
+			int type = code & 7;
+			int x = from / 8;
+			int y = from % 8;
+			
+			if (type != Piece.PAWN)
+				return steps(type, x, y, occupied, true);
+			
+			int count = 0;
+			int forward = (code >> 3 == Piece.WHITE) ? -1 : 1;
+			if (!onBoard(x + forward, 0))
+				return 0;
+			int ahead = Tablebase.square(x + forward, y);
+			if ((occupied & (1L << ahead)) == 0){
+				targets[count++] = ahead;
+				int twoAhead = ahead + 8 * forward;
+				if (x == Tablebase.startRow(code >> 3) && (occupied & (1L << twoAhead)) == 0)
+					targets[count++] = twoAhead;
+			}
+			for (int side = -1; side <= 1; side += 2){
+				if (onBoard(x + forward, y + side)
+						&& (occupied & (1L << Tablebase.square(x + forward, y + side))) != 0)
+					targets[count++] = Tablebase.square(x + forward, y + side);
+			}
+			return count;
+		}
+		
+		/**
+		 * Empty squares a piece could have come from by a move that
+		 * is not a capture.
+		 * @return - the number of squares, in targets
+		 */
+		private int moveOrigins(int code, int to, long occupied){
+			int type = code & 7;
+			int x = to / 8;
+			int y = to % 8;
+			
+			if (type != Piece.PAWN)
+				return steps(type, x, y, occupied, false);
+			
+			int count = 0;
+			int back = (code >> 3 == Piece.WHITE) ? 1 : -1;
+			if (!onBoard(x + back, 0) || x + back == Tablebase.backRow(code >> 3))
+				return 0;
+			int behind = Tablebase.square(x + back, y);
+			if ((occupied & (1L << behind)) == 0){
+				targets[count++] = behind;
+				if (x + 2 * back == Tablebase.startRow(code >> 3)
+						&& (occupied & (1L << (behind + 8 * back))) == 0)
+					targets[count++] = behind + 8 * back;
+			}
+			return count;
+		}
+		
+		/**
+		 * Squares a knight, bishop, rook, queen or king reaches. Rays
+		 * stop at the first piece, which is listed if blockers are.
+		 */
+		private int steps(int type, int x, int y, long occupied, boolean blockers){
+			int count = 0;
+			if (type == Piece.KNIGHT || type == Piece.KING){
+				int[] stepX = (type == Piece.KNIGHT) ? KNIGHT_X : KING_X;
+				int[] stepY = (type == Piece.KNIGHT) ? KNIGHT_Y : KING_Y;
+				for (int i = 0; i < stepX.length; i++){
+					int square = Tablebase.square(x + stepX[i], y + stepY[i]);
+					if (onBoard(x + stepX[i], y + stepY[i])
+							&& (blockers || (occupied & (1L << square)) == 0))
+						targets[count++] = square;
+				}
+				return count;
+			}
+			
+			// Rays run along the king's steps
+			for (int i = 0; i < KING_X.length; i++){
+				boolean diagonal = KING_X[i] != 0 && KING_Y[i] != 0;
+				if ((diagonal && type == Piece.ROOK) || (!diagonal && type == Piece.BISHOP))
+					continue;
+				for (int toX = x + KING_X[i], toY = y + KING_Y[i]; onBoard(toX, toY);
+						toX += KING_X[i], toY += KING_Y[i]){
+					int square = Tablebase.square(toX, toY);
+					if ((occupied & (1L << square)) != 0){
+						if (blockers)
+							targets[count++] = square;
+						break;
+					}
+					targets[count++] = square;
+				}
+			}
+			return count;
+		}
+		
+		private boolean attacks(int code, int from, int target, long occupied){
+			int type = code & 7;
+			int dx = target / 8 - from / 8;
+			int dy = target % 8 - from % 8;
+			
+			switch (type){
+			case Piece.PAWN:
+				return dx == ((code >> 3 == Piece.WHITE) ? -1 : 1) && Math.abs(dy) == 1;
+			case Piece.KNIGHT:
+				return Math.abs(dx * dy) == 2;
+			case Piece.KING:
+				return Math.max(Math.abs(dx), Math.abs(dy)) == 1;
+			case Piece.BISHOP:
+				return Math.abs(dx) == Math.abs(dy) && isPathClear(from, dx, dy, occupied);
+			case Piece.ROOK:
+				return (dx == 0 || dy == 0) && isPathClear(from, dx, dy, occupied);
+			default:
+				return (dx == 0 || dy == 0 || Math.abs(dx) == Math.abs(dy))
+						&& isPathClear(from, dx, dy, occupied);
+			}
+		}
+		
+		private boolean isPathClear(int from, int dx, int dy, long occupied){
+			int length = Math.max(Math.abs(dx), Math.abs(dy));
+			int step = 8 * Integer.signum(dx) + Integer.signum(dy);
+			for (int i = 1, square = from + step; i < length; i++, square += step){
+				if ((occupied & (1L << square)) != 0)
+					return false;
+			}
+			return length > 0;
+		}
+	}
+	
+	private static boolean onBoard(int x, int y){
+		return x >= 0 && x < 8 && y >= 0 && y < 8;
+	}
+	
+	/**
+	 * Outcome of a move for the player making it, from the entry of
+	 * the position it leads to, in the encoding of captures.
+	 */
+	private static int reply(int entry){
+		if (entry == 0)
+			return CAPTURE_DRAW;
+		int distance = Tablebase.getDistance(entry) + 1;
+		return (Tablebase.getResult(entry) == Tablebase.LOSS) ? distance : distance + 2;
+	}
+	
+	/**
+	 * The better of two capture outcomes: the quickest win,
+	 * then a draw, then the slowest loss, then no capture.
+	 */
+	private static int better(int a, int b){
+		return (rank(a) >= rank(b)) ? a : b;
+	}
+	
+	private static int rank(int outcome){
+		if (outcome == 0)
+			return Integer.MIN_VALUE;
+		if (outcome == CAPTURE_DRAW)
+			return 0;
+		int distance = Tablebase.getDistance(outcome);
+		return (Tablebase.getResult(outcome) == Tablebase.WIN) ? 1000 - distance : distance - 1000;
+	}
+}
@@ -0,0 +1,146 @@
+
+/**
+ * Fixed size hash table of search results, keyed by position key.
+ *
+ * Entries are packed into a single long[] so that probing and storing
+ * never allocate. Each bucket holds two entries: the first is only
+ * replaced by deeper (or newer) results, the second always takes the
+ * latest result. Each entry is two longs, the key XOR the data and the
+ * data itself, so a torn write from another thread reads as a miss
+ * instead of as a wrong result.
+ */
+public class TranspositionTable {
+	public static final int BOUND_EXACT = 1;
+	public static final int BOUND_LOWER = 2;
+	public static final int BOUND_UPPER = 3;
+	
+	private static final int ENTRY_LONGS = 2;
+	private static final int BUCKET_LONGS = 2 * ENTRY_LONGS;
+	private static final int BUCKET_BYTES = BUCKET_LONGS * 8;
+	
+	// Data layout: move in bits 0-31, score 32-47, depth 48-55,
+	// bound 56-57, generation 58-63
+	private static final int SCORE_SHIFT = 32;
+	private static final int DEPTH_SHIFT = 48;
+	private static final int BOUND_SHIFT = 56;
+	private static final int GENERATION_SHIFT = 58;
+	private static final int GENERATION_MASK = 0x3F;
+	
+	private long[] table;
+	private int bucketMask;
+	private int generation;
+	
+	/**
+	 * Creates a table using at most the given amount of memory,
+	 * rounded down to a power of two number of buckets.
+	 * @param megabytes memory budget, at least 1
+	 */
+	public TranspositionTable(int megabytes){
+		long bytes = Math.max(1, megabytes) * 1024L * 1024L;
+		long buckets = Long.highestOneBit(bytes / BUCKET_BYTES);
+		
+		// Keep the long[] within what an array can index
+		while (buckets * BUCKET_LONGS > Integer.MAX_VALUE - 8){
+			buckets >>= 1;
+		}
+		table = new long[(int) buckets * BUCKET_LONGS];
+		bucketMask = (int) buckets - 1;
+		generation = 0;
+	}
+	
+	/**
+	 * Looks a position up.
+	 * @param key position key, from Game.getPositionKey
+	 * @return the packed entry data, or 0 if the position is not stored
+	 */
+	public long probe(long key){
+		int index = bucketIndex(key);
+		
+		for (int i = index; i < index + BUCKET_LONGS; i += ENTRY_LONGS){
+			long data = table[i + 1];
+			if (data != 0 && (table[i] ^ data) == key)
+				return data;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Stores a search result for a position.
+	 * @param key position key, from Game.getPositionKey
+	 * @param move best move found, or Move.NONE
+	 * @param score score of the position, within a short
+	 * @param depth depth searched, 0 to 255
+	 * @param bound BOUND_EXACT, BOUND_LOWER or BOUND_UPPER
+	 */
+	public void store(long key, int move, int score, int depth, int bound){
+		long data = pack(move, score, depth, bound, generation);
+		int index = bucketIndex(key);
+		
+		// Deeper results, results for the same position and results
+		// left over from an older search go in the depth-preferred slot
+		long oldData = table[index + 1];
+		if (oldData == 0 || (table[index] ^ oldData) == key
+				|| depth >= getDepth(oldData) || getGeneration(oldData) != generation){
+			table[index] = key ^ data;
+			table[index + 1] = data;
+		}
+		else {
+			table[index + ENTRY_LONGS] = key ^ data;
+			table[index + ENTRY_LONGS + 1] = data;
+		}
+	}
+	
+	/**
+	 * Marks the start of a new search, so that entries from
+	 * earlier searches give way to new ones.
+	 */
+	public void newSearch(){
+		generation = (generation + 1) & GENERATION_MASK;
+	}
+	
+	public void clear(){
+		java.util.Arrays.fill(table, 0L);
+		generation = 0;
+	}
+	
+	/**
+	 * Number of entries the table can hold.
+	 */
+	public int getCapacity(){
+		return table.length / ENTRY_LONGS;
+	}
+	
+	private int bucketIndex(long key){
+		return ((int) (key ^ (key >>> 32)) & bucketMask) * BUCKET_LONGS;
+	}
+	
+	private static long pack(int move, int score, int depth, int bound, int generation){
+		return (move & 0xFFFFFFFFL)
+				| ((score & 0xFFFFL) << SCORE_SHIFT)
+				| ((long) (depth & 0xFF) << DEPTH_SHIFT)
+				| ((long) bound << BOUND_SHIFT)
+				| ((long) generation << GENERATION_SHIFT);
+	}
+	
+	// Unpacking of probed entry data below
+	
+	public static int getMove(long data){
+		return (int) data;
+	}
+	
+	public static int getScore(long data){
+		return (short) (data >>> SCORE_SHIFT);
+	}
+	
+	public static int getDepth(long data){
+		return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+	}
+	
+	public static int getBound(long data){
+		return (int) (data >>> BOUND_SHIFT) & 0x3;
+	}
+	
+	private static int getGeneration(long data){
+		return (int) (data >>> GENERATION_SHIFT) & GENERATION_MASK;
+	}
+}
@@ -0,0 +1,402 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Drives the engine through the Universal Chess Interface, reading
+ * commands a line at a time and writing the replies, so that GUIs and
+ * other programs can run it. The commands understood are uci, isready,
+ * ucinewgame, setoption (Hash, Threads, Tablebase), position, go (depth,
+ * movetime, nodes, infinite and the clock times), stop and quit.
+ *
+ * Searches run on a thread of their own, so that commands are still
+ * read while they go on. The search writes an info line after each
+ * iteration and a bestmove line when it ends. Moves are written in long
+ * algebraic notation, such as e2e4, rank 8 being x = 0.
+ */
+public class Uci implements Search.Listener {
+	public static final String NAME = "Chess";
+	public static final int DEFAULT_HASH_MEGABYTES = 16;
+	public static final int MAX_HASH_MEGABYTES = 4096;
+	public static final int MAX_THREADS = 256;
+	// Moves the clock time is shared out over when no count is given
+	private static final int DEFAULT_MOVES_TO_GO = 30;
+	
+	private BufferedReader in;
+	private PrintStream out;
+	private Game game;
+	private int[] moves;
+	
+	private int hashMegabytes;
+	private int threadCount;
+	private TranspositionTable table;
+	private Tablebase tablebase;
+	private ParallelSearch search;
+	private Thread searchThread;
+	private CountDownLatch stopSignal;
+	private long searchStart;
+	
+	public Uci(InputStream in, PrintStream out){
+		this.in = new BufferedReader(new InputStreamReader(in, java.nio.charset.StandardCharsets.US_ASCII));
+		this.out = out;
+		game = new Game();
+		game.standardSetup();
+		moves = new int[Game.MAX_MOVES];
+		
+		hashMegabytes = DEFAULT_HASH_MEGABYTES;
+		threadCount = 1;
+		table = new TranspositionTable(hashMegabytes);
+		search = newSearch();
+	}
+	
+	/**
+	 * Carries out commands until quit is given or the input ends.
+	 * @throws IOException if the input cannot be read
+	 */
+	public void run() throws IOException {
+		try {
+			String line;
+			while ((line = in.readLine()) != null){
+				if (!execute(line))
+					break;
+			}
+		} finally {
+			stopSearch();
+			if (tablebase != null)
+				tablebase.close();
+		}
+	}
+	
+	/**
+	 * Carries out one command. Unknown commands are ignored,
+	 * as the protocol asks.
+	 * @param line - the command line
+	 * @return - false once quit is given
+	 */
+	boolean execute(String line){
+		String[] words = line.trim().split("\\s+");
+		
+		switch (words[0]){
+		case "uci":
+			send("id name " + NAME);
+			send("id author LeeStephen");
+			send("option name Hash type spin default " + DEFAULT_HASH_MEGABYTES
+					+ " min 1 max " + MAX_HASH_MEGABYTES);
+			send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+			send("option name Tablebase type string default <empty>");
+			send("uciok");
+			break;
+		case "isready":
+			send("readyok");
+			break;
+		case "ucinewgame":
+			stopSearch();
+			table.clear();
+			break;
+		case "setoption":
+			stopSearch();
+			setOption(words);
+			break;
+		case "position":
+			stopSearch();
+			setPosition(words);
+			break;
+		case "go":
+			stopSearch();
+			go(words);
+			break;
+		case "stop":
+			stopSearch();
+			break;
+		case "quit":
+			stopSearch();
+			return false;
+		default:
+			break;
+		}
+		return true;
+	}
+	
+	/**
+	 * Writes the info line of a completed iteration.
+	 */
+	public void iterationDone(Search completed, int depth, int score, int[] principalVariation){
+		long millis = System.currentTimeMillis() - searchStart;
+		long nodes = search.getNodes();
+		StringBuilder info = new StringBuilder("info depth ").append(depth).append(" score ");
+		
+		if (score > Search.MATE_BOUND)
+			info.append("mate ").append((Search.MATE_SCORE - score + 1) / 2);
+		else if (score < -Search.MATE_BOUND)
+			info.append("mate ").append(-(Search.MATE_SCORE + score) / 2);
+		else
+			info.append("cp ").append(score);
+		
+		info.append(" nodes ").append(nodes).append(" nps ").append(nodes * 1000 / Math.max(1, millis))
+				.append(" time ").append(millis).append(" pv");
+		for (int move : principalVariation){
+			info.append(' ').append(toUci(move));
+		}
+		send(info.toString());
+	}
+	
+	/**
+	 * Waits for a search started by go to end by itself, without
+	 * stopping it, for example at the end of a depth limited search.
+	 */
+	void waitForSearch(){
+		if (searchThread != null)
+			joinQuietly(searchThread);
+	}
+	
+	/**
+	 * setoption name Hash value 64, setoption name Threads value 4,
+	 * setoption name Tablebase value /path/to/file.
+	 */
+	private void setOption(String[] words){
+		int valueAt = indexOf(words, "value");
+		if (valueAt < 0)
+			valueAt = words.length;
+		String name = joinWords(words, indexOf(words, "name") + 1, valueAt);
+		String value = joinWords(words, valueAt + 1, words.length);
+		
+		try {
+			if (name.equalsIgnoreCase("Hash")){
+				hashMegabytes = Math.max(1, Math.min(MAX_HASH_MEGABYTES, Integer.parseInt(value)));
+				table = new TranspositionTable(hashMegabytes);
+			}
+			else if (name.equalsIgnoreCase("Threads"))
+				threadCount = Math.max(1, Math.min(MAX_THREADS, Integer.parseInt(value)));
+			else if (name.equalsIgnoreCase("Tablebase")){
+				if (tablebase != null)
+					tablebase.close();
+				tablebase = null;
+				if (!value.isEmpty() && !value.equals("<empty>"))
+					tablebase = new Tablebase(java.nio.file.Paths.get(value));
+			}
+			else
+				send("info string Unknown option " + name);
+		} catch (NumberFormatException e) {
+			send("info string Not a number: " + value);
+		} catch (IOException e) {
+			send("info string Cannot read tablebase " + value + ": " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * position startpos [moves ...] or position fen record [moves ...].
+	 * Moves stop at the first illegal one.
+	 */
+	private void setPosition(String[] words){
+		int movesAt = indexOf(words, "moves");
+		if (movesAt < 0)
+			movesAt = words.length;
+		
+		try {
+			if (words.length > 1 && words[1].equals("fen"))
+				game.setupFen(joinWords(words, 2, movesAt));
+			else
+				game.standardSetup();
+		} catch (IllegalArgumentException e) {
+			send("info string " + e.getMessage());
+			game.standardSetup();
+			return;
+		}
+		
+		for (int i = movesAt + 1; i < words.length; i++){
+			int move = parseMove(words[i]);
+			if (move == Move.NONE){
+				send("info string Illegal move " + words[i]);
+				return;
+			}
+			game.playMove(move);
+		}
+	}
+	
+	/**
+	 * go [depth n] [movetime ms] [nodes n] [infinite]
+	 * [wtime ms] [btime ms] [winc ms] [binc ms] [movestogo n].
+	 */
+	private void go(String[] words){
+		int depth = Game.MAX_PLY - 1;
+		long moveTime = 0;
+		long nodes = 0;
+		boolean infinite = false;
+		long[] clock = new long[2];
+		long[] increment = new long[2];
+		int movesToGo = DEFAULT_MOVES_TO_GO;
+		
+		try {
+			for (int i = 1; i < words.length; i++){
+				boolean hasValue = i + 1 < words.length;
+				switch (words[i]){
+				case "infinite":
+					infinite = true;
+					break;
+				case "depth":
+					depth = Math.max(1, Math.min(depth, hasValue ? Integer.parseInt(words[++i]) : depth));
+					break;
+				case "movetime":
+					moveTime = hasValue ? Long.parseLong(words[++i]) : 0;
+					break;
+				case "nodes":
+					nodes = hasValue ? Long.parseLong(words[++i]) : 0;
+					break;
+				case "wtime":
+					clock[Game.WHITE] = hasValue ? Long.parseLong(words[++i]) : 0;
+					break;
+				case "btime":
+					clock[Game.BLACK] = hasValue ? Long.parseLong(words[++i]) : 0;
+					break;
+				case "winc":
+					increment[Game.WHITE] = hasValue ? Long.parseLong(words[++i]) : 0;
+					break;
+				case "binc":
+					increment[Game.BLACK] = hasValue ? Long.parseLong(words[++i]) : 0;
+					break;
+				case "movestogo":
+					movesToGo = Math.max(1, hasValue ? Integer.parseInt(words[++i]) : movesToGo);
+					break;
+				default:
+					break;
+				}
+			}
+		} catch (NumberFormatException e) {
+			send("info string Not a number in " + joinWords(words, 0, words.length));
+		}
+		
+		int player = game.getPlayerTurn();
+		if (moveTime == 0 && !infinite && clock[player] > 0){
+			// Never more than half of what is left on the clock
+			moveTime = Math.max(1, Math.min(clock[player] / 2,
+					clock[player] / movesToGo + increment[player] / 2));
+		}
+		if (infinite)
+			moveTime = 0;
+		
+		startSearch(depth, moveTime, nodes, infinite);
+	}
+	
+	private void startSearch(final int depth, final long moveTime, final long nodes, final boolean infinite){
+		final Game root = game.copy();
+		// A fresh search for each go, so that a stop sent after the
+		// last one ended cannot carry over to this one
+		search = newSearch();
+		final ParallelSearch running = search;
+		final CountDownLatch signal = new CountDownLatch(1);
+		stopSignal = signal;
+		searchStart = System.currentTimeMillis();
+		
+		searchThread = new Thread(new Runnable(){
+			public void run(){
+				int best = running.search(root, depth, moveTime, nodes);
+				// Infinite searches report only once told to stop
+				if (infinite){
+					try {
+						signal.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				
+				send("bestmove " + (best == Move.NONE ? "0000" : toUci(best)));
+			}
+		}, "uci-search");
+		searchThread.start();
+	}
+	
+	/**
+	 * Stops the running search, if any, and waits for its bestmove.
+	 */
+	private void stopSearch(){
+		if (searchThread == null)
+			return;
+		
+		stopSignal.countDown();
+		search.stop();
+		joinQuietly(searchThread);
+		searchThread = null;
+	}
+	
+	private ParallelSearch newSearch(){
+		ParallelSearch created = new ParallelSearch(table, threadCount);
+		created.setTablebase(tablebase);
+		created.setListener(this);
+		return created;
+	}
+	
+	/**
+	 * Finds the legal move of the current position written as,
+	 * for example, e2e4.
+	 * @return - the move, or Move.NONE if it is not legal
+	 */
+	private int parseMove(String text){
+		if (text.length() != 4)
+			return Move.NONE;
+		int fromY = text.charAt(0) - 'a';
+		int fromX = '8' - text.charAt(1);
+		int toY = text.charAt(2) - 'a';
+		int toX = '8' - text.charAt(3);
+		if (!game.getBoard().isInBounds(fromX, fromY) || !game.getBoard().isInBounds(toX, toY))
+			return Move.NONE;
+		
+		int move = Move.encode(fromX, fromY, toX, toY);
+		int count = game.generateLegalMoves(game.getPlayerTurn(), moves);
+		for (int i = 0; i < count; i++){
+			if (moves[i] == move)
+				return move;
+		}
+		return Move.NONE;
+	}
+	
+	/**
+	 * A move in long algebraic notation, for example e2e4.
+	 */
+	static String toUci(int move){
+		return new StringBuilder(4)
+				.append((char) ('a' + Move.fromY(move))).append((char) ('8' - Move.fromX(move)))
+				.append((char) ('a' + Move.toY(move))).append((char) ('8' - Move.toX(move)))
+				.toString();
+	}
+	
+	private void send(String line){
+		synchronized (out){
+			out.println(line);
+			out.flush();
+		}
+	}
+	
+	private static int indexOf(String[] words, String word){
+		for (int i = 0; i < words.length; i++){
+			if (words[i].equals(word))
+				return i;
+		}
+		return -1;
+	}
+	
+	private static String joinWords(String[] words, int from, int to){
+		StringBuilder joined = new StringBuilder();
+		for (int i = Math.max(0, from); i < to && i < words.length; i++){
+			if (joined.length() > 0)
+				joined.append(' ');
+			joined.append(words[i]);
+		}
+		return joined.toString();
+	}
+	
+	private static void joinQuietly(Thread thread){
+		boolean interrupted = false;
+		while (thread.isAlive()){
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+}
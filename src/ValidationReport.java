@@ -0,0 +1,134 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Totals from validating a run of PGN games: how many games and moves
+ * were replayed, which games had a move that could not be played, and
+ * how many ended in checkmate or stalemate. Reports of consecutive
+ * runs of games are combined with merge.
+ */
+public class ValidationReport {
+	// Illegal moves listed one by one; beyond this they are only counted
+	public static final int MAX_LISTED = 10000;
+	
+	private long games;
+	private long plies;
+	private long illegalGames;
+	private long checkmates;
+	private long stalemates;
+	private List<IllegalMove> illegalMoves;
+	
+	/**
+	 * A move that could not be played.
+	 */
+	public static class IllegalMove {
+		private long game;
+		private int ply;
+		private String move;
+		
+		public IllegalMove(long game, int ply, String move){
+			this.game = game;
+			this.ply = ply;
+			this.move = move;
+		}
+		
+		/**
+		 * Number of the game within the report, from 1.
+		 */
+		public long getGame(){
+			return game;
+		}
+		
+		/**
+		 * Ply of the move within its game, from 0.
+		 */
+		public int getPly(){
+			return ply;
+		}
+		
+		public String getMove(){
+			return move;
+		}
+	}
+	
+	public ValidationReport(){
+		illegalMoves = new ArrayList<IllegalMove>();
+	}
+	
+	/**
+	 * Counts one more game, just read.
+	 */
+	public void add(PgnGame game){
+		games++;
+		plies += game.getMoveCount();
+		if (game.hasIllegalMove()){
+			illegalGames++;
+			if (illegalMoves.size() < MAX_LISTED)
+				illegalMoves.add(new IllegalMove(games, game.getIllegalPly(), game.getIllegalMove()));
+		}
+		else if (game.isCheckmate())
+			checkmates++;
+		else if (game.isStalemate())
+			stalemates++;
+	}
+	
+	/**
+	 * Adds in the report of the games that follow this report's.
+	 * @param later - report of the next run of games
+	 * @return - this report
+	 */
+	public ValidationReport merge(ValidationReport later){
+		for (IllegalMove illegal : later.illegalMoves){
+			if (illegalMoves.size() == MAX_LISTED)
+				break;
+			illegalMoves.add(new IllegalMove(games + illegal.getGame(),
+					illegal.getPly(), illegal.getMove()));
+		}
+		games += later.games;
+		plies += later.plies;
+		illegalGames += later.illegalGames;
+		checkmates += later.checkmates;
+		stalemates += later.stalemates;
+		return this;
+	}
+	
+	public long getGames(){
+		return games;
+	}
+	
+	public long getPlies(){
+		return plies;
+	}
+	
+	public long getIllegalGames(){
+		return illegalGames;
+	}
+	
+	public long getCheckmates(){
+		return checkmates;
+	}
+	
+	public long getStalemates(){
+		return stalemates;
+	}
+	
+	/**
+	 * The first MAX_LISTED illegal moves, in game order.
+	 */
+	public List<IllegalMove> getIllegalMoves(){
+		return java.util.Collections.unmodifiableList(illegalMoves);
+	}
+	
+	public void print(PrintStream out){
+		out.println("games: " + games + ", moves: " + plies);
+		out.println("checkmates: " + checkmates + ", stalemates: " + stalemates);
+		out.println("games with an illegal move: " + illegalGames);
+		for (IllegalMove illegal : illegalMoves){
+			out.println("  game " + illegal.getGame() + ", ply " + illegal.getPly()
+					+ ": " + illegal.getMove());
+		}
+		if (illegalGames > illegalMoves.size())
+			out.println("  ... " + (illegalGames - illegalMoves.size()) + " more");
+	}
+}
@@ -0,0 +1,53 @@
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of
+ * the keys of every piece on its square, plus SIDE_TO_MOVE when
+ * black is to move, so it can be updated with a couple of XORs
+ * as pieces come and go.
+ */
+public class Zobrist {
+	public static final int MAX_TABLE_SQUARES = 256;
+	public static final long SIDE_TO_MOVE;
+	private static final long[] PIECE_KEYS;
+	private static final long SEED = 0x2545F4914F6CDD1DL;
+	
+	static {
+		// Fixed seed, so that keys are the same on every run
+		long state = SEED;
+		PIECE_KEYS = new long[2 * Piece.PIECE_TYPES * MAX_TABLE_SQUARES];
+		for (int i = 0; i < PIECE_KEYS.length; i++){
+			state += 0x9E3779B97F4A7C15L;
+			PIECE_KEYS[i] = mix(state);
+		}
+		state += 0x9E3779B97F4A7C15L;
+		SIDE_TO_MOVE = mix(state);
+	}
+	
+	private Zobrist(){
+	}
+	
+	/**
+	 * Returns the key of one piece standing on one square.
+	 * @param color color of the piece
+	 * @param type type of the piece
+	 * @param square square number on the board
+	 * @return the key to XOR into the position key
+	 */
+	public static long pieceKey(int color, int type, int square){
+		int piece = color * Piece.PIECE_TYPES + type;
+		
+		if (square < MAX_TABLE_SQUARES)
+			return PIECE_KEYS[piece * MAX_TABLE_SQUARES + square];
+		// Squares of very large variant boards are hashed on the fly
+		return mix(SEED ^ (((long) piece << 32) | square));
+	}
+	
+	/**
+	 * SplitMix64 finalizer, spreads the bits of a counter.
+	 */
+	private static long mix(long value){
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+}
@@ -273,6 +273,85 @@ public class ChessTest {
 		assertFalse(testPiece.canMoveTo(1, -1));
 	}
 	
+	/**
+	 * Diagonals running the other way must also be blocked
+	 * by pieces in between.
+	 */
+	@Test
+	public void testAntiDiagonalBlocked(){
+		Bishop testBishop = new Bishop(standardBoard, WHITE, 0, 6);
+		assertTrue(testBishop.canMoveTo(5, 1));
+		
+		Pawn testBlocker = new Pawn(standardBoard, BLACK, 2, 4);
+		assertTrue(testBishop.canMoveTo(2, 4));
+		assertFalse(testBishop.canMoveTo(5, 1));
+	}
+	
+	/**
+	 * The bitboard copy of the board should follow every
+	 * placement, move and removal.
+	 */
+	@Test
+	public void bitBoardTracksPieces(){
+		BitBoard bits = standardBoard.getBitBoard();
+		int square = standardBoard.squareIndex(xGenericPieceLocation, yGenericPieceLocation);
+		
+		assertTrue(bits.isOccupiedBy(square, BLACK));
+		assertEquals(1L << square, bits.getPieces(BLACK, Piece.GENERIC));
+		
+		Rook testRook = new Rook(standardBoard, WHITE, 2, 3);
+		testRook.moveTo(xGenericPieceLocation, yGenericPieceLocation);
+		assertTrue(bits.isOccupiedBy(square, WHITE));
+		assertFalse(bits.isOccupied(standardBoard.squareIndex(2, 3)));
+		assertEquals(0L, bits.getColorOccupancy(BLACK));
+		
+		testRook.removePiece();
+		assertEquals(0L, bits.getOccupied());
+		
+		// Boards too large for a single long fall back to the array
+		Board largeBoard = new Board(10, 10);
+		assertNull(largeBoard.getBitBoard());
+		new Piece(largeBoard, BLACK, 9, 9);
+		assertFalse(largeBoard.isEmptyPosition(9, 9));
+	}
+	
+	/**
+	 * Verify that boards with more columns than rows report their
+	 * dimensions the right way round, and that moves and attacks
+	 * stop at every edge.
+	 */
+	@Test
+	public void nonSquareBoards() {
+		Board wideBoard = new Board(6, 11);
+		assertEquals(6, wideBoard.getXDimension());
+		assertEquals(11, wideBoard.getYDimension());
+		assertTrue(wideBoard.isInBounds(5, 10));
+		assertFalse(wideBoard.isInBounds(6, 0));
+		assertFalse(wideBoard.isInBounds(0, 11));
+		
+		int[] moves = new int[64];
+		Knight cornerKnight = new Knight(wideBoard, BLACK, 0, 10);
+		assertEquals(2, cornerKnight.generateMoves(moves, 0));
+		assertTrue(wideBoard.isAttacked(2, 9, BLACK));
+		assertFalse(wideBoard.isAttacked(1, 0, BLACK));
+		
+		Rook rook = new Rook(wideBoard, WHITE, 5, 0);
+		new Pawn(wideBoard, WHITE, 5, 4);
+		Piece blocker = new Pawn(wideBoard, BLACK, 2, 0);
+		assertEquals(6, rook.generateMoves(moves, 0));
+		assertTrue(wideBoard.isAttacked(5, 4, WHITE));
+		assertTrue(wideBoard.isAttacked(2, 0, WHITE));
+		assertFalse(wideBoard.isAttacked(1, 0, WHITE));
+		assertFalse(wideBoard.isPathClear(5, 0, 0, 0));
+		assertTrue(rook.canMoveTo(2, 0));
+		assertFalse(rook.canMoveTo(1, 0));
+		
+		blocker.removePiece();
+		assertEquals(8, rook.generateMoves(moves, 0));
+		assertEquals(1, wideBoard.getAttackCount(0, 0, WHITE));
+		assertTrue(rook.canMoveTo(0, 0));
+	}
+	
 	/**
 	 * Test to verify the King moves properly
 	 */
@@ -460,6 +539,1009 @@ public class ChessTest {
 		assertFalse(gameLogic.isKingInCheck(BLACK));
 	}
 	
+	/**
+	 * The move generator should list exactly the spots
+	 * that canMoveTo accepts.
+	 */
+	@Test
+	public void generatedMovesMatchCanMoveTo() {
+		gameLogic.testSetup();
+		gameLogic.addKnight(WHITE, 4, 4);
+		gameLogic.addRook(WHITE, 6, 3);
+		gameLogic.addPawn(WHITE, 6, 6);
+		Board board = gameLogic.getBlackKing().getBoard();
+		int[] moves = new int[Game.MAX_MOVES];
+		
+		for (int color = BLACK; color <= WHITE; color++){
+			int moveCount = gameLogic.generateMoves(color, moves);
+			int expectedCount = 0;
+			
+			for (int x = 0; x < 8; x++){
+				for (int y = 0; y < 8; y++){
+					Piece piece = board.pieceAt(x, y);
+					if (piece == null || piece.getColor() != color)
+						continue;
+					
+					for (int toX = 0; toX < 8; toX++){
+						for (int toY = 0; toY < 8; toY++){
+							if (piece.canMoveTo(toX, toY)){
+								expectedCount++;
+								assertTrue(containsMove(moves, moveCount,
+										Move.encode(x, y, toX, toY)));
+							}
+						}
+					}
+				}
+			}
+			assertEquals(expectedCount, moveCount);
+		}
+	}
+	
+	private boolean containsMove(int[] moves, int moveCount, int move){
+		for (int i = 0; i < moveCount; i++){
+			if (moves[i] == move)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Pawns cannot jump over a piece on their first double step.
+	 */
+	@Test
+	public void pawnCannotJump() {
+		Pawn testPawn = new Pawn(standardBoard, WHITE, 6, 2);
+		assertTrue(testPawn.canMoveTo(4, 2));
+		
+		Knight testKnight = new Knight(standardBoard, WHITE, 5, 2);
+		assertFalse(testPawn.canMoveTo(4, 2));
+	}
+	
+	/**
+	 * Making and taking back a move should leave the game
+	 * exactly as it was, captured pieces included.
+	 */
+	@Test
+	public void makeAndUnmakeMove() {
+		Pawn pawn = gameLogic.addPawn(WHITE, 6, 2);
+		Knight knight = gameLogic.addKnight(BLACK, 5, 3);
+		Board board = pawn.getBoard();
+		
+		gameLogic.makeMove(Move.encode(6, 2, 5, 3));
+		assertEquals(pawn, board.pieceAt(5, 3));
+		assertFalse(knight.onBoard());
+		assertTrue(pawn.hasMoved());
+		assertEquals(BLACK, gameLogic.getPlayerTurn());
+		
+		gameLogic.unmakeMove();
+		assertEquals(pawn, board.pieceAt(6, 2));
+		assertEquals(knight, board.pieceAt(5, 3));
+		didPiecesMoveTo(knight, 5, 3);
+		assertFalse(pawn.hasMoved());
+		assertEquals(WHITE, gameLogic.getPlayerTurn());
+		
+		// Checking for legal moves must not use up the double step
+		assertTrue(gameLogic.canMove(WHITE));
+		assertFalse(pawn.hasMoved());
+	}
+	
+	/**
+	 * The incrementally kept attack maps should always match
+	 * maps built from scratch for the same position.
+	 */
+	@Test
+	public void attackMapsStayInStep() {
+		gameLogic.testSetup();
+		gameLogic.addQueen(WHITE, 6, 3);
+		gameLogic.addRook(WHITE, 7, 7);
+		gameLogic.addBishop(WHITE, 7, 5);
+		gameLogic.addKnight(WHITE, 7, 6);
+		gameLogic.addPawn(WHITE, 6, 4);
+		Board board = gameLogic.getBlackKing().getBoard();
+		int[] moves = new int[Game.MAX_MOVES];
+		java.util.Random random = new java.util.Random(7);
+		int plies = 0;
+		
+		for (; plies < 40; plies++){
+			int moveCount = gameLogic.generateLegalMoves(gameLogic.getPlayerTurn(), moves);
+			if (moveCount == 0)
+				break;
+			gameLogic.makeMove(moves[random.nextInt(moveCount)]);
+			assertAttackMapsMatch(board);
+		}
+		for (; plies > 0; plies--){
+			gameLogic.unmakeMove();
+		}
+		assertAttackMapsMatch(board);
+	}
+	
+	private void assertAttackMapsMatch(Board board){
+		Board rebuilt = rebuildBoard(board);
+		
+		for (int x = 0; x < 8; x++){
+			for (int y = 0; y < 8; y++){
+				assertEquals(rebuilt.getAttackCount(x, y, BLACK), board.getAttackCount(x, y, BLACK));
+				assertEquals(rebuilt.getAttackCount(x, y, WHITE), board.getAttackCount(x, y, WHITE));
+			}
+		}
+	}
+	
+	/**
+	 * Places copies of the pieces of an 8x8 board on a fresh board.
+	 */
+	private Board rebuildBoard(Board board){
+		Board rebuilt = new Board(8, 8);
+		
+		for (int x = 0; x < 8; x++){
+			for (int y = 0; y < 8; y++){
+				Piece piece = board.pieceAt(x, y);
+				if (piece instanceof Pawn) new Pawn(rebuilt, piece.getColor(), x, y);
+				else if (piece instanceof Knight) new Knight(rebuilt, piece.getColor(), x, y);
+				else if (piece instanceof Bishop) new Bishop(rebuilt, piece.getColor(), x, y);
+				else if (piece instanceof Rook) new Rook(rebuilt, piece.getColor(), x, y);
+				else if (piece instanceof Queen) new Queen(rebuilt, piece.getColor(), x, y);
+				else if (piece instanceof King) new King(rebuilt, piece.getColor(), x, y);
+			}
+		}
+		return rebuilt;
+	}
+	
+	/**
+	 * The moves kept by the pin and check tests should be exactly
+	 * those that do not leave the king in check when tried.
+	 */
+	@Test
+	public void legalMovesMatchTriedMoves() {
+		String[] fens = {"4k3/4r3/8/8/1b6/8/3N4/r3K3 w - - 0 1",
+				"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w - - 0 1",
+				"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+				"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1"};
+		int[] moves = new int[Game.MAX_MOVES];
+		int[] tried = new int[Game.MAX_MOVES];
+		java.util.Random random = new java.util.Random(25);
+		
+		for (String fen : fens){
+			gameLogic.setupFen(fen);
+			for (int ply = 0; ply < 60; ply++){
+				int player = gameLogic.getPlayerTurn();
+				int moveCount = gameLogic.generateLegalMoves(player, moves);
+				int triedCount = 0;
+				
+				int pseudoCount = gameLogic.generateMoves(player, tried);
+				for (int i = 0; i < pseudoCount; i++){
+					gameLogic.makeMove(tried[i]);
+					if (!gameLogic.isKingInCheck(player))
+						tried[triedCount++] = tried[i];
+					gameLogic.unmakeMove();
+				}
+				
+				java.util.Arrays.sort(moves, 0, moveCount);
+				java.util.Arrays.sort(tried, 0, triedCount);
+				assertEquals(java.util.Arrays.toString(java.util.Arrays.copyOf(tried, triedCount)),
+						java.util.Arrays.toString(java.util.Arrays.copyOf(moves, moveCount)));
+				if (moveCount == 0)
+					break;
+				gameLogic.makeMove(moves[random.nextInt(moveCount)]);
+			}
+		}
+	}
+	
+	/**
+	 * Move generation should reach the known leaf counts
+	 * of the reference positions.
+	 */
+	@Test
+	public void perftReferenceCounts() {
+		java.io.PrintStream silent = new java.io.PrintStream(new java.io.ByteArrayOutputStream());
+		assertTrue(Perft.runSuite(3, silent));
+		
+		gameLogic.standardSetup();
+		assertEquals(8902, new Perft(gameLogic).perft(3));
+	}
+	
+	/**
+	 * Position keys should depend only on the position, whatever
+	 * order the moves were played in, and on who is to move.
+	 */
+	@Test
+	public void positionKeys() {
+		gameLogic.standardSetup();
+		long startKey = gameLogic.getPositionKey();
+		
+		// Knights out and back returns to the start, but black to move
+		gameLogic.makeMove(Move.encode(7, 6, 5, 5));
+		gameLogic.makeMove(Move.encode(0, 6, 2, 5));
+		gameLogic.makeMove(Move.encode(5, 5, 7, 6));
+		assertFalse(startKey == gameLogic.getPositionKey());
+		gameLogic.makeMove(Move.encode(2, 5, 0, 6));
+		assertEquals(startKey, gameLogic.getPositionKey());
+		
+		// Same position reached in a different order
+		Game otherOrder = new Game();
+		otherOrder.standardSetup();
+		gameLogic.makeMove(Move.encode(6, 4, 4, 4));
+		gameLogic.makeMove(Move.encode(1, 4, 3, 4));
+		gameLogic.makeMove(Move.encode(7, 6, 5, 5));
+		otherOrder.makeMove(Move.encode(7, 6, 5, 5));
+		otherOrder.makeMove(Move.encode(1, 4, 3, 4));
+		otherOrder.makeMove(Move.encode(6, 4, 4, 4));
+		assertEquals(otherOrder.getPositionKey(), gameLogic.getPositionKey());
+		
+		for (int i = 0; i < 7; i++){
+			gameLogic.unmakeMove();
+		}
+		assertEquals(startKey, gameLogic.getPositionKey());
+	}
+	
+	/**
+	 * Stored results should come back unchanged, and a deeper
+	 * result should not be pushed out by a shallower one.
+	 */
+	@Test
+	public void transpositionTableStoresAndReplaces() {
+		TranspositionTable table = new TranspositionTable(1);
+		int move = Move.encode(6, 4, 4, 4);
+		long key = 0x123456789ABCDEFL;
+		
+		assertEquals(0, table.probe(key));
+		table.store(key, move, -250, 6, TranspositionTable.BOUND_LOWER);
+		
+		long data = table.probe(key);
+		assertEquals(move, TranspositionTable.getMove(data));
+		assertEquals(-250, TranspositionTable.getScore(data));
+		assertEquals(6, TranspositionTable.getDepth(data));
+		assertEquals(TranspositionTable.BOUND_LOWER, TranspositionTable.getBound(data));
+		
+		// A shallower result for another position in the same bucket
+		// goes in the always-replace slot
+		long otherKey = key + ((long) table.getCapacity() << 32);
+		table.store(otherKey, Move.NONE, 10, 2, TranspositionTable.BOUND_EXACT);
+		assertEquals(6, TranspositionTable.getDepth(table.probe(key)));
+		assertEquals(10, TranspositionTable.getScore(table.probe(otherKey)));
+		
+		table.clear();
+		assertEquals(0, table.probe(key));
+	}
+	
+	/**
+	 * The search should find a back rank mate and take
+	 * a queen left hanging.
+	 */
+	@Test
+	public void searchFindsBestMove() {
+		gameLogic.setupPosition("6k1/5ppp/8/8/8/8/8/R5K1", WHITE);
+		Search search = new Search(gameLogic, new TranspositionTable(1));
+		
+		int mateMove = Move.encode(7, 0, 0, 0);
+		assertEquals(mateMove, search.search(4, 0, 0));
+		assertTrue(search.getBestScore() > Search.MATE_BOUND);
+		assertEquals(mateMove, search.getPrincipalVariation()[0]);
+		
+		gameLogic.setupPosition("4k3/8/8/3q4/8/4N3/8/4K3", WHITE);
+		search = new Search(gameLogic, new TranspositionTable(1));
+		assertEquals(Move.encode(5, 4, 3, 3), search.search(3, 0, 0));
+		assertEquals(3, search.getCompletedDepth());
+		
+		// The position is left as it was
+		assertTrue(gameLogic.getBoard().pieceAt(5, 4) instanceof Knight);
+		assertTrue(gameLogic.getBoard().pieceAt(3, 3) instanceof Queen);
+		assertEquals(WHITE, gameLogic.getPlayerTurn());
+	}
+	
+	/**
+	 * A search stopped before it starts should still search its
+	 * first root move and return it, without finishing the iteration.
+	 */
+	@Test
+	public void stoppedSearchReturnsFirstRootMove() {
+		gameLogic.setupPosition("4k3/8/8/3q4/8/4N3/8/4K3", WHITE);
+		Search search = new Search(gameLogic, new TranspositionTable(1));
+		
+		// Taking the queen is ordered first
+		search.stop();
+		assertEquals(Move.encode(5, 4, 3, 3), search.search(6, 0, 0));
+		assertEquals(0, search.getCompletedDepth());
+		
+		// The stop was used up by that search
+		search.search(3, 0, 0);
+		assertEquals(3, search.getCompletedDepth());
+		
+		gameLogic.setupFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w - - 0 1");
+		search = new Search(gameLogic, new TranspositionTable(1));
+		search.search(1, 0, 0);
+		long fullIteration = search.getNodes();
+		search.stop();
+		search.search(6, 0, 0);
+		assertTrue(search.getNodes() < fullIteration);
+		
+		gameLogic.standardSetup();
+		search.stop();
+		int move = search.search(4, 0, 0);
+		int[] moves = new int[Game.MAX_MOVES];
+		int moveCount = gameLogic.generateLegalMoves(WHITE, moves);
+		assertTrue(containsMove(moves, moveCount, move));
+	}
+	
+	/**
+	 * Several threads searching copies of one game should agree
+	 * on a forced mate and leave the original game untouched.
+	 */
+	@Test
+	public void parallelSearchFindsMate() {
+		gameLogic.setupPosition("6k1/5ppp/8/8/8/8/8/R5K1", WHITE);
+		long key = gameLogic.getPositionKey();
+		ParallelSearch search = new ParallelSearch(new TranspositionTable(4), 3);
+		
+		assertEquals(Move.encode(7, 0, 0, 0), search.search(gameLogic, 4, 0, 0));
+		assertTrue(search.getBestScore() > Search.MATE_BOUND);
+		assertTrue(search.getNodes() > 0);
+		assertEquals(key, gameLogic.getPositionKey());
+		
+		// Copies are independent of the original
+		Game copy = gameLogic.copy();
+		assertEquals(key, copy.getPositionKey());
+		copy.makeMove(Move.encode(7, 0, 0, 0));
+		assertEquals(key, gameLogic.getPositionKey());
+		assertTrue(copy.isCheckmate(BLACK));
+	}
+	
+	/**
+	 * Material and piece-square scores kept by the board should
+	 * match a board built from scratch, and the evaluation should
+	 * see symmetric positions as level and passed pawns as strong.
+	 */
+	@Test
+	public void evaluationScores() {
+		gameLogic.standardSetup();
+		Board board = gameLogic.getBoard();
+		Evaluation evaluation = new Evaluation();
+		int[] moves = new int[Game.MAX_MOVES];
+		java.util.Random random = new java.util.Random(11);
+		
+		assertEquals(0, evaluation.evaluate(gameLogic));
+		assertEquals(8 * 100 + 2 * 320 + 2 * 330 + 2 * 500 + 900, board.getMaterial(WHITE));
+		
+		for (int plies = 0; plies < 60; plies++){
+			int moveCount = gameLogic.generateLegalMoves(gameLogic.getPlayerTurn(), moves);
+			if (moveCount == 0)
+				break;
+			gameLogic.makeMove(moves[random.nextInt(moveCount)]);
+			
+			Board rebuilt = rebuildBoard(board);
+			for (int color = BLACK; color <= WHITE; color++){
+				assertEquals(rebuilt.getMaterial(color), board.getMaterial(color));
+				assertEquals(rebuilt.getPieceSquareScore(color), board.getPieceSquareScore(color));
+			}
+		}
+		
+		// A white pawn on b4 is held back by a black pawn on a7
+		// but passes one on h7, and scores more the further it is
+		long pawnB4 = 1L << (4 * 8 + 1);
+		long pawnB6 = 1L << (2 * 8 + 1);
+		assertFalse(Evaluation.isPassed(4 * 8 + 1, 1L << (1 * 8), WHITE));
+		assertTrue(Evaluation.isPassed(4 * 8 + 1, 1L << (1 * 8 + 7), WHITE));
+		assertTrue(Evaluation.pawnStructure(pawnB6, 0, WHITE) > Evaluation.pawnStructure(pawnB4, 0, WHITE));
+		
+		gameLogic.setupPosition("4k3/p7/8/8/8/8/P7/4K3", WHITE);
+		assertEquals(0, evaluation.evaluate(gameLogic));
+	}
+	
+	/**
+	 * The pawn key should change only when pawns do, and the pawn
+	 * table should hand back the structure it was given.
+	 */
+	@Test
+	public void pawnHashTable() {
+		gameLogic.setupPosition("4k3/p4p2/8/8/8/8/PP6/4K3", WHITE);
+		Board board = gameLogic.getBoard();
+		long pawnKey = board.getPawnKey();
+		
+		gameLogic.makeMove(Move.encode(7, 4, 7, 3));
+		assertEquals(pawnKey, board.getPawnKey());
+		gameLogic.makeMove(Move.encode(1, 5, 2, 5));
+		assertTrue(pawnKey != board.getPawnKey());
+		gameLogic.unmakeMove();
+		assertEquals(pawnKey, board.getPawnKey());
+		
+		PawnHashTable table = new PawnHashTable(4);
+		assertEquals(-1, table.find(pawnKey));
+		int slot = table.store(pawnKey, -25, 1L << 13, 0);
+		assertEquals(slot, table.find(pawnKey));
+		assertEquals(-25, table.getScore(slot));
+		assertEquals(1L << 13, table.getPassedPawns(slot, BLACK));
+		assertEquals(1, table.getHits());
+		assertEquals(1, table.getMisses());
+		
+		// Cached and fresh evaluations agree, and searching
+		// mostly finds the pawn structure already stored
+		Evaluation evaluation = new Evaluation();
+		int score = evaluation.evaluate(gameLogic);
+		assertEquals(score, evaluation.evaluate(gameLogic));
+		assertEquals(score, new Evaluation().evaluate(gameLogic));
+		
+		Search search = new Search(gameLogic, new TranspositionTable(1));
+		search.search(4, 0, 0);
+		PawnHashTable searchTable = search.getEvaluation().getPawnTable();
+		assertTrue(searchTable.getHits() > searchTable.getMisses());
+	}
+	
+	/**
+	 * Piece lists should hold exactly the pieces on the board,
+	 * dropping captured pieces and taking them back on unmake.
+	 */
+	@Test
+	public void pieceListsFollowTheBoard() {
+		gameLogic.setupPosition("4k3/8/8/3p4/8/8/8/3RK3", WHITE);
+		Board board = gameLogic.getBoard();
+		PieceList blackPieces = board.getPieceList(BLACK);
+		int pawnSquare = board.squareIndex(3, 3);
+		
+		assertEquals(2, blackPieces.size());
+		assertTrue(blackPieces.get(blackPieces.indexOf(pawnSquare)) instanceof Pawn);
+		
+		gameLogic.makeMove(Move.encode(7, 3, 3, 3));
+		assertEquals(1, blackPieces.size());
+		assertEquals(-1, blackPieces.indexOf(board.squareIndex(7, 3)));
+		assertTrue(blackPieces.get(0) instanceof King);
+		PieceList whitePieces = board.getPieceList(WHITE);
+		assertTrue(whitePieces.get(whitePieces.indexOf(pawnSquare)) instanceof Rook);
+		
+		gameLogic.unmakeMove();
+		assertEquals(2, blackPieces.size());
+		assertEquals(pawnSquare, blackPieces.getSquare(blackPieces.indexOf(pawnSquare)));
+		
+		gameLogic.removePiece(board.pieceAt(3, 3));
+		assertEquals(1, blackPieces.size());
+		gameLogic.clearBoard();
+		assertEquals(0, blackPieces.size());
+		assertEquals(0, whitePieces.size());
+	}
+	
+	/**
+	 * Snapshots should record the position exactly, compare by
+	 * value, and play back into an equal position.
+	 */
+	@Test
+	public void positionSnapshots() {
+		gameLogic.standardSetup();
+		gameLogic.makeMove(Move.encode(6, 4, 4, 4));
+		gameLogic.makeMove(Move.encode(0, 6, 2, 5));
+		Position position = gameLogic.getPosition();
+		
+		assertEquals(WHITE, position.getPlayerTurn());
+		assertEquals(Piece.KNIGHT, position.getPieceType(2, 5));
+		assertEquals(BLACK, position.getColor(2, 5));
+		assertEquals(-1, position.getPieceType(0, 6));
+		assertTrue(position.hasMoved(4, 4));
+		assertFalse(position.hasMoved(6, 3));
+		
+		// The snapshot does not follow later moves
+		gameLogic.makeMove(Move.encode(7, 6, 5, 5));
+		assertEquals(-1, position.getPieceType(5, 5));
+		assertFalse(position.equals(gameLogic.getPosition()));
+		
+		Game restored = new Game();
+		restored.setPosition(position);
+		assertEquals(position, restored.getPosition());
+		assertEquals(position.hashCode(), restored.getPosition().hashCode());
+		gameLogic.unmakeMove();
+		assertEquals(gameLogic.getPositionKey(), restored.getPositionKey());
+		assertTrue(restored.getBoard().pieceAt(4, 4).hasMoved());
+	}
+	
+	/**
+	 * FEN records should load from text or bytes and be written
+	 * back the same, with the move counters kept up to date.
+	 */
+	@Test
+	public void fenImportAndExport() {
+		String fen = "r2q1rk1/pp1nbppp/2p1pn2/3p4/2PP4/2NBPN2/PP3PPP/R2QK2R b - - 3 12";
+		gameLogic.setupFen(fen);
+		
+		assertEquals(BLACK, gameLogic.getPlayerTurn());
+		assertEquals(3, gameLogic.getHalfmoveClock());
+		assertEquals(12, gameLogic.getFullmoveNumber());
+		assertTrue(gameLogic.getBoard().pieceAt(0, 3) instanceof Queen);
+		assertEquals(fen, gameLogic.toFen());
+		
+		// A quiet move ticks both counters, a pawn move resets the clock
+		gameLogic.makeMove(Move.encode(0, 3, 1, 2));
+		assertEquals(4, gameLogic.getHalfmoveClock());
+		assertEquals(13, gameLogic.getFullmoveNumber());
+		gameLogic.makeMove(Move.encode(4, 2, 3, 3));
+		assertEquals(0, gameLogic.getHalfmoveClock());
+		gameLogic.unmakeMove();
+		gameLogic.unmakeMove();
+		assertEquals(fen, gameLogic.toFen());
+		
+		byte[] line = ("xx" + Game.STANDARD_PLACEMENT + " w KQkq -\n").getBytes();
+		gameLogic.setupFen(line, 2, line.length - 3);
+		assertEquals(Game.STANDARD_PLACEMENT + " w - - 0 1", gameLogic.toFen());
+		assertEquals(20, gameLogic.generateLegalMoves(WHITE, new int[Game.MAX_MOVES]));
+		
+		try {
+			gameLogic.setupFen(Game.STANDARD_PLACEMENT + " x");
+			fail("Side to move should be checked");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+	
+	/**
+	 * The PGN reader should replay games one at a time, skipping
+	 * comments and variations and reporting moves it cannot play.
+	 */
+	@Test
+	public void pgnReaderReplaysGames() throws java.io.IOException {
+		String pgn = "[Event \"Mate\"]\n[White \"A\"]\n\n"
+				+ "1. e4 e5 2. Bc4 {aiming at f7} Nc6 (2... d6 3. d4) 3. Qh5 Nf6?? $4\n"
+				+ "4. Qxf7# 1-0\n\n"
+				+ "[Event \"Castles\"]\n1. e4 e5 2. Nf3 Nc6 3. Bc4 Bc5 4. O-O Nf6 1/2-1/2\n\n"
+				+ "[FEN \"7k/8/8/8/8/8/8/R3K2R w - - 0 1\"]\n1. Rad1 Kg8 2.Rh8+ Kxh8 *\n"
+				+ "[Event \"Unfinished\"]\n1. d4 d5\n";
+		PgnReader reader = new PgnReader(java.nio.channels.Channels.newChannel(
+				new java.io.ByteArrayInputStream(pgn.getBytes("US-ASCII"))));
+		
+		PgnGame game = reader.next();
+		assertEquals("Mate", game.getTag("Event"));
+		assertEquals("1-0", game.getResult());
+		assertEquals(7, game.getMoveCount());
+		assertEquals(Move.encode(3, 7, 1, 5), game.getMove(6));
+		assertTrue(game.isCheckmate());
+		assertFalse(game.hasIllegalMove());
+		
+		game = reader.next();
+		assertEquals("Castles", game.getTag("Event"));
+		assertEquals(6, game.getIllegalPly());
+		assertEquals("O-O", game.getIllegalMove());
+		assertFalse(game.isCheckmate());
+		
+		// The rook on a1 is the one that goes to d1
+		game = reader.next();
+		assertNull(game.getTag("Event"));
+		assertEquals(4, game.getMoveCount());
+		assertEquals(Move.encode(7, 0, 7, 3), game.getMove(0));
+		assertEquals(PgnGame.UNKNOWN_RESULT, game.getResult());
+		
+		game = reader.next();
+		assertEquals("Unfinished", game.getTag("Event"));
+		assertEquals(2, game.getMoveCount());
+		assertNull(reader.next());
+		assertEquals(4, reader.getGamesRead());
+		reader.close();
+	}
+	
+	/**
+	 * Games longer than the undo stack should replay to the end.
+	 */
+	@Test
+	public void pgnReaderReplaysLongGames() throws java.io.IOException {
+		StringBuilder pgn = new StringBuilder("[Event \"Shuffle\"]\n\n");
+		int plies = 2 * Game.MAX_PLY + 4;
+		for (int i = 0; i < plies / 4; i++){
+			pgn.append(2 * i + 1).append(". Nf3 Nf6 ").append(2 * i + 2).append(". Ng1 Ng8\n");
+		}
+		pgn.append("1/2-1/2\n");
+		PgnReader reader = new PgnReader(java.nio.channels.Channels.newChannel(
+				new java.io.ByteArrayInputStream(pgn.toString().getBytes("US-ASCII"))));
+		
+		PgnGame game = reader.next();
+		assertFalse(game.hasIllegalMove());
+		assertEquals(plies, game.getMoveCount());
+		assertEquals("1/2-1/2", game.getResult());
+		assertNull(reader.next());
+		reader.close();
+	}
+	
+	/**
+	 * Validating a file in many small shards on several threads
+	 * should give the same report, in file order, as reading it
+	 * straight through.
+	 */
+	@Test
+	public void batchValidatorMergesShards() throws java.io.IOException {
+		String games = "[Event \"Mate\"]\n\n1. e4 e5 2. Bc4 Nc6 3. Qh5 Nf6 4. Qxf7# 1-0\n\n"
+				+ "[Event \"Castles\"]\n\n1. e4 e5 2. Nf3 Nc6 3. Bc4 Bc5 4. O-O 1/2-1/2\n\n"
+				+ "[Event \"Stalemate\"]\n[FEN \"7k/5Q2/6K1/8/8/8/8/8 b - - 0 1\"]\n\n1/2-1/2\n\n";
+		StringBuilder pgn = new StringBuilder();
+		for (int i = 0; i < 5; i++){
+			pgn.append(games);
+		}
+		java.nio.file.Path file = java.nio.file.Files.createTempFile("games", ".pgn");
+		
+		try {
+			java.nio.file.Files.write(file, pgn.toString().getBytes("US-ASCII"));
+			ValidationReport report = new BatchValidator(3, 100).validate(file);
+			
+			assertEquals(15, report.getGames());
+			assertEquals(5, report.getCheckmates());
+			assertEquals(5, report.getStalemates());
+			assertEquals(5, report.getIllegalGames());
+			assertEquals(5 * (7 + 6), report.getPlies());
+			for (int i = 0; i < 5; i++){
+				ValidationReport.IllegalMove illegal = report.getIllegalMoves().get(i);
+				assertEquals(2 + 3 * i, illegal.getGame());
+				assertEquals(6, illegal.getPly());
+				assertEquals("O-O", illegal.getMove());
+			}
+		} finally {
+			java.nio.file.Files.delete(file);
+		}
+	}
+	
+	/**
+	 * Games written as binary records should read back move for
+	 * move, in any order, at about a byte per move.
+	 */
+	@Test
+	public void gameRecordsRoundTrip() throws java.io.IOException {
+		java.nio.file.Path file = java.nio.file.Files.createTempFile("games", ".bin");
+		int[] longGame = new int[200];
+		int[] legalMoves = new int[Game.MAX_MOVES];
+		java.util.Random random = new java.util.Random(5);
+		gameLogic.standardSetup();
+		int plies = 0;
+		for (; plies < longGame.length; plies++){
+			int moveCount = gameLogic.generateLegalMoves(gameLogic.getPlayerTurn(), legalMoves);
+			if (moveCount == 0)
+				break;
+			longGame[plies] = legalMoves[random.nextInt(moveCount)];
+			gameLogic.makeMove(longGame[plies]);
+		}
+		long finalKey = gameLogic.getPositionKey();
+		String rookFen = "7k/8/8/8/8/8/8/R3K2R w - - 0 1";
+		
+		try {
+			GameRecordWriter writer = new GameRecordWriter(file);
+			writer.write(null, longGame, plies, "1/2-1/2");
+			writer.write(rookFen, new int[] {Move.encode(7, 0, 7, 3)}, 1, "1-0");
+			writer.write(null, new int[0], 0, "*");
+			writer.close();
+			assertTrue(java.nio.file.Files.size(file) < plies + 100);
+			
+			GameRecordReader reader = new GameRecordReader(file);
+			int[] moves = new int[256];
+			assertEquals(3, reader.getGameCount());
+			assertEquals(1, reader.readGame(1, gameLogic, moves));
+			assertEquals(Move.encode(7, 0, 7, 3), moves[0]);
+			assertEquals("1-0", reader.getResult(1));
+			assertEquals(BLACK, gameLogic.getPlayerTurn());
+			
+			assertEquals(plies, reader.getMoveCount(0));
+			assertEquals(plies, reader.readGame(0, gameLogic, moves));
+			for (int i = 0; i < plies; i++){
+				assertEquals(longGame[i], moves[i]);
+			}
+			assertEquals(finalKey, gameLogic.getPositionKey());
+			assertEquals(0, reader.readGame(2, gameLogic, moves));
+			assertEquals("*", reader.getResult(2));
+			reader.close();
+		} finally {
+			java.nio.file.Files.delete(file);
+		}
+	}
+	
+	/**
+	 * A written book should hand back the moves stored for a
+	 * position, merged and by weight, and never an illegal one.
+	 */
+	@Test
+	public void openingBookLookups() throws java.io.IOException {
+		java.nio.file.Path file = java.nio.file.Files.createTempFile("book", ".bin");
+		gameLogic.standardSetup();
+		long startKey = gameLogic.getPositionKey();
+		int kingsPawn = Move.encode(6, 4, 4, 4);
+		int queensPawn = Move.encode(6, 3, 4, 3);
+		
+		OpeningBookBuilder builder = new OpeningBookBuilder();
+		for (long key = -50; key < 50; key++){
+			builder.add(key * 0x9E3779B97F4A7C15L, queensPawn, 1);
+		}
+		builder.add(startKey, kingsPawn, 2);
+		builder.add(startKey, queensPawn, 1);
+		builder.add(startKey, kingsPawn, 1);
+		builder.add(startKey, Move.encode(0, 0, 5, 5), 1000);
+		
+		try {
+			assertEquals(103, builder.write(file));
+			OpeningBook book = new OpeningBook(file);
+			int[] moves = new int[8];
+			int[] weights = new int[8];
+			
+			assertEquals(3, book.probe(gameLogic, moves, weights));
+			for (int i = 0; i < 3; i++){
+				if (moves[i] == kingsPawn)
+					assertEquals(3, weights[i]);
+			}
+			
+			java.util.Random random = new java.util.Random(3);
+			int kingsPawnPicks = 0;
+			for (int i = 0; i < 400; i++){
+				int move = book.pickMove(gameLogic, random);
+				assertTrue(move == kingsPawn || move == queensPawn);
+				if (move == kingsPawn)
+					kingsPawnPicks++;
+			}
+			assertTrue(kingsPawnPicks > 250 && kingsPawnPicks < 350);
+			
+			gameLogic.makeMove(kingsPawn);
+			assertEquals(0, book.probe(gameLogic, moves, weights));
+			assertEquals(Move.NONE, book.pickMove(gameLogic, random));
+			book.close();
+		} finally {
+			java.nio.file.Files.delete(file);
+		}
+	}
+	
+	/**
+	 * Verify that generated tablebases agree with the moves of the game:
+	 * every entry is the best outcome among the entries of its moves.
+	 */
+	@Test
+	public void tablebaseEntriesFollowTheMoves() throws java.io.IOException {
+		java.nio.file.Path file = java.nio.file.Files.createTempFile("tablebase", ".bin");
+		TablebaseGenerator generator = new TablebaseGenerator();
+		generator.generate("KQvK");
+		generator.generate("KPvK");
+		
+		try {
+			assertEquals(3, generator.write(file));
+			Tablebase tablebase = new Tablebase(file);
+			
+			gameLogic.setupFen("k7/8/1K6/8/8/8/7Q/8 w - - 0 1");
+			int entry = tablebase.probe(gameLogic);
+			assertEquals(Tablebase.WIN, Tablebase.getResult(entry));
+			assertEquals(1, Tablebase.getDistance(entry));
+			gameLogic.makeMove(Move.encode(6, 7, 0, 7));
+			entry = tablebase.probe(gameLogic);
+			assertTrue(gameLogic.isCheckmate(BLACK));
+			assertEquals(Tablebase.LOSS, Tablebase.getResult(entry));
+			assertEquals(0, Tablebase.getDistance(entry));
+			
+			// The colors reversed are found through the mirrored table
+			gameLogic.setupFen("8/7q/8/8/8/1k6/8/K7 b - - 0 1");
+			assertEquals(1, tablebase.probe(gameLogic));
+			gameLogic.setupFen("8/8/8/8/8/8/8/K1k4r b - - 0 1");
+			assertEquals(Tablebase.NOT_FOUND, tablebase.probe(gameLogic));
+			
+			java.util.Random random = new java.util.Random(20);
+			int[] moves = new int[Game.MAX_MOVES];
+			int checked = 0;
+			while (checked < 300){
+				int type = random.nextBoolean() ? Piece.QUEEN : Piece.PAWN;
+				int color = random.nextBoolean() ? WHITE : BLACK;
+				int x = (type == Piece.PAWN) ? 1 + random.nextInt(6) : random.nextInt(8);
+				int y = random.nextInt(8);
+				gameLogic.clearBoard();
+				gameLogic.addPiece(Piece.KING, WHITE, random.nextInt(8), random.nextInt(8));
+				if (gameLogic.getBoard().pieceAt(x, y) != null)
+					continue;
+				Piece piece = gameLogic.addPiece(type, color, x, y);
+				piece.setHasMoved(x != ((color == WHITE) ? 6 : 1));
+				int kingX = random.nextInt(8);
+				int kingY = random.nextInt(8);
+				if (gameLogic.getBoard().pieceAt(kingX, kingY) != null)
+					continue;
+				gameLogic.addPiece(Piece.KING, BLACK, kingX, kingY);
+				gameLogic.setPlayer(random.nextBoolean() ? WHITE : BLACK);
+				
+				entry = tablebase.probe(gameLogic);
+				if (entry == Tablebase.NOT_FOUND)
+					continue;
+				assertEquals(bestTablebaseEntry(gameLogic, tablebase, moves), entry);
+				checked++;
+			}
+			
+			// Searching a table position finds the mate at its distance
+			gameLogic.setupFen("8/8/8/3k4/8/8/7Q/K7 w - - 0 1");
+			entry = tablebase.probe(gameLogic);
+			assertEquals(Tablebase.WIN, Tablebase.getResult(entry));
+			Search search = new Search(gameLogic, new TranspositionTable(1));
+			search.setTablebase(tablebase);
+			search.search(2, 0, 0);
+			assertEquals(Search.MATE_SCORE - Tablebase.getDistance(entry), search.getBestScore());
+			tablebase.close();
+		} finally {
+			java.nio.file.Files.delete(file);
+		}
+	}
+	
+	/**
+	 * The entry a position should have, from the entries of the
+	 * positions its legal moves lead to.
+	 */
+	private static int bestTablebaseEntry(Game game, Tablebase tablebase, int[] moves){
+		int player = game.getPlayerTurn();
+		int count = game.generateLegalMoves(player, moves);
+		int bestWin = Integer.MAX_VALUE;
+		int worstLoss = -1;
+		boolean draw = false;
+		
+		for (int i = 0; i < count; i++){
+			game.makeMove(moves[i]);
+			int entry = tablebase.probe(game);
+			game.unmakeMove();
+			assertTrue(entry != Tablebase.NOT_FOUND);
+			
+			if (Tablebase.getResult(entry) == Tablebase.LOSS)
+				bestWin = Math.min(bestWin, Tablebase.getDistance(entry) + 1);
+			else if (Tablebase.getResult(entry) == Tablebase.WIN)
+				worstLoss = Math.max(worstLoss, Tablebase.getDistance(entry) + 1);
+			else
+				draw = true;
+		}
+		
+		if (bestWin != Integer.MAX_VALUE)
+			return bestWin;
+		if (draw || (count == 0 && !game.isKingInCheck(player)))
+			return 0;
+		return (count == 0) ? 2 : worstLoss + 2;
+	}
+	
+	/**
+	 * Verify that repeated positions and the fifty-move rule are found,
+	 * looking back only to the last pawn move.
+	 */
+	@Test
+	public void repetitionAndFiftyMoveDraws() {
+		int[] knightMoves = {Move.encode(7, 6, 5, 5), Move.encode(0, 6, 2, 5),
+				Move.encode(5, 5, 7, 6), Move.encode(2, 5, 0, 6)};
+		gameLogic.standardSetup();
+		
+		for (int i = 0; i < 4; i++){
+			assertFalse(gameLogic.isRepetition());
+			gameLogic.makeMove(knightMoves[i]);
+		}
+		assertTrue(gameLogic.isRepetition());
+		assertEquals(2, gameLogic.getRepetitionCount());
+		assertEquals(2, gameLogic.copy().getRepetitionCount());
+		
+		for (int i = 0; i < 4; i++){
+			gameLogic.makeMove(knightMoves[i]);
+		}
+		assertEquals(3, gameLogic.getRepetitionCount());
+		assertTrue(gameLogic.isGameOver());
+		gameLogic.unmakeMove();
+		gameLogic.makeMove(knightMoves[3]);
+		assertEquals(3, gameLogic.getRepetitionCount());
+		
+		// Pawn moves cannot be taken back, so nothing before them repeats
+		gameLogic.makeMove(Move.encode(6, 4, 4, 4));
+		gameLogic.makeMove(Move.encode(1, 4, 3, 4));
+		for (int i = 0; i < 3; i++){
+			gameLogic.makeMove(knightMoves[i]);
+			assertEquals(1, gameLogic.getRepetitionCount());
+		}
+		
+		// Beyond the ring of remembered positions, repetitions are not counted
+		for (int i = 3; i < 203; i++){
+			gameLogic.makeMove(knightMoves[i % 4]);
+		}
+		assertEquals(1 + Game.KEY_HISTORY / 4, gameLogic.getRepetitionCount());
+		
+		// Games played for good may run past the undo stack
+		gameLogic.standardSetup();
+		long startKey = gameLogic.getPositionKey();
+		for (int i = 0; i < 2 * Game.MAX_PLY + 4; i++){
+			gameLogic.playMove(knightMoves[i % 4]);
+		}
+		assertEquals(startKey, gameLogic.getPositionKey());
+		assertEquals(2 * Game.MAX_PLY + 4, gameLogic.getHalfmoveClock());
+		assertEquals(1 + Game.KEY_HISTORY / 4, gameLogic.getRepetitionCount());
+		gameLogic.unmakeMove();
+		assertTrue(gameLogic.getBoard().pieceAt(2, 5) instanceof Knight);
+		assertEquals(BLACK, gameLogic.getPlayerTurn());
+		
+		gameLogic.setupFen("8/8/8/3k4/8/8/8/K6R w - - 99 80");
+		assertFalse(gameLogic.isFiftyMoveDraw());
+		assertEquals(1, gameLogic.getRepetitionCount());
+		gameLogic.makeMove(Move.encode(7, 7, 6, 7));
+		assertTrue(gameLogic.isFiftyMoveDraw());
+		assertTrue(gameLogic.isGameOver());
+		gameLogic.unmakeMove();
+		assertFalse(gameLogic.isFiftyMoveDraw());
+	}
+	
+	/**
+	 * Verify that UCI commands set up positions, run searches in the
+	 * background and report their moves.
+	 */
+	@Test
+	public void uciCommands() {
+		java.io.ByteArrayOutputStream output = new java.io.ByteArrayOutputStream();
+		Uci uci = new Uci(new java.io.ByteArrayInputStream(new byte[0]), new java.io.PrintStream(output));
+		assertEquals("e2e4", Uci.toUci(Move.encode(6, 4, 4, 4)));
+		
+		assertTrue(uci.execute("uci"));
+		assertTrue(uci.execute("isready"));
+		assertTrue(uci.execute("setoption name Hash value 1"));
+		assertTrue(output.toString().contains("uciok"));
+		assertTrue(output.toString().contains("readyok"));
+		
+		uci.execute("position startpos moves e2e4 e7e5 g1f3");
+		uci.execute("go depth 2");
+		uci.waitForSearch();
+		assertTrue(output.toString().contains("info depth 2 score cp "));
+		assertTrue(isLegalBestMove(output.toString(),
+				"rnbqkbnr/pppp1ppp/8/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R b - - 1 2"));
+		
+		output.reset();
+		uci.execute("position fen k7/8/1K6/8/8/8/7Q/8 w - - 0 1");
+		uci.execute("go depth 5");
+		uci.waitForSearch();
+		assertTrue(output.toString().contains("score mate 1 "));
+		assertTrue(output.toString().endsWith("bestmove h2h8" + System.lineSeparator()));
+		
+		// Infinite searches answer only when stopped
+		output.reset();
+		uci.execute("position startpos moves e2e5");
+		assertTrue(output.toString().contains("info string Illegal move e2e5"));
+		uci.execute("go infinite");
+		assertTrue(uci.execute("isready"));
+		uci.execute("stop");
+		assertTrue(output.toString().contains("readyok"));
+		assertTrue(isLegalBestMove(output.toString(), Game.STANDARD_PLACEMENT + " w - - 0 1"));
+		
+		// A stop straight after go still answers with a searched move
+		output.reset();
+		uci.execute("position fen 4k3/8/8/3q4/8/4N3/8/4K3 w - - 0 1");
+		uci.execute("go depth 20");
+		uci.execute("stop");
+		assertTrue(output.toString().endsWith("bestmove e3d5" + System.lineSeparator()));
+		assertFalse(uci.execute("quit"));
+	}
+	
+	/**
+	 * Checks that the last bestmove in some UCI output is a legal
+	 * move of a position.
+	 */
+	private boolean isLegalBestMove(String output, String fen){
+		String best = output.substring(output.lastIndexOf("bestmove ") + 9).trim();
+		gameLogic.setupFen(fen);
+		int[] moves = new int[Game.MAX_MOVES];
+		
+		for (int i = gameLogic.generateLegalMoves(gameLogic.getPlayerTurn(), moves) - 1; i >= 0; i--){
+			if (Uci.toUci(moves[i]).equals(best))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Verify that the magic tables give the squares found by walking
+	 * each ray, for random occupancies from every square.
+	 */
+	@Test
+	public void magicAttacksMatchRayWalks() {
+		java.util.Random random = new java.util.Random(23);
+		for (int square = 0; square < 64; square++){
+			for (int i = 0; i < 200; i++){
+				long occupied = random.nextLong() & random.nextLong();
+				long rook = walkRays(square, occupied, new int[][] {{1, 0}, {-1, 0}, {0, 1}, {0, -1}});
+				long bishop = walkRays(square, occupied, new int[][] {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}});
+				
+				assertEquals(rook, Magic.rookAttacks(square, occupied));
+				assertEquals(bishop, Magic.bishopAttacks(square, occupied));
+				assertEquals(rook | bishop, Magic.queenAttacks(square, occupied));
+			}
+		}
+	}
+	
+	private long walkRays(int square, long occupied, int[][] steps) {
+		long attacks = 0;
+		for (int[] step : steps){
+			int x = square / 8 + step[0];
+			int y = square % 8 + step[1];
+			while (x >= 0 && x < 8 && y >= 0 && y < 8){
+				attacks |= 1L << (x * 8 + y);
+				if ((occupied & (1L << (x * 8 + y))) != 0)
+					break;
+				x += step[0];
+				y += step[1];
+			}
+		}
+		return attacks;
+	}
+	
 	/**
 	 * Verify that turns can be switched properly.
 	 */